@@ -0,0 +1,9 @@
+//represents the parts strategies that play on the boards the simulation
+//picks share
+abstract class AStrategy implements IStrategy {
+
+  //the seed the simulation picked
+  public long seedFor(int game, long seed) {
+    return seed;
+  }
+}
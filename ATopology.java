@@ -0,0 +1,42 @@
+//represents the parts every topology of a numRows x numCols grid shares,
+//where the cell at column col and row row has index col * numRows + row
+abstract class ATopology implements ITopology {
+
+  int rows;
+  int cols;
+
+
+  //constructor of ATopology
+  ATopology(int rows, int cols) {
+    this.rows = rows;
+    this.cols = cols;
+  }
+
+
+  //the number of rows of the grid
+  public int numRows() {
+    return this.rows;
+  }
+
+
+  //the number of columns of the grid
+  public int numCols() {
+    return this.cols;
+  }
+
+
+  //EFFECT: recompute the adjacency count of every cell
+  //by counting the mines among its neighbours
+  public void recount(Board board) {
+    int[] around = new int[this.maxDegree()];
+    byte[] state = board.state;
+    for (int i = 0; i < state.length; i += 1) {
+      int n = this.neighbours(i, around);
+      int mines = 0;
+      for (int k = 0; k < n; k += 1) {
+        mines += (state[around[k]] & Board.MINE) >> 4;
+      }
+      state[i] = (byte) ((state[i] & ~Board.COUNT_MASK) | mines);
+    }
+  }
+}
@@ -0,0 +1,691 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+//times the hot paths of the game on boards of several sizes and mine
+//densities, reporting throughput and the bytes allocated per operation
+//(the same figure JMH's gc profiler reports as gc.alloc.rate.norm);
+//JMH itself cannot be used because it refuses benchmark classes in the
+//unnamed package, and the game classes are only visible from there
+//
+//run with: java Benchmarks [sizes=30,500] [densities=0.05,0.2]
+//          [cases=floodFill,makeScene] [warmup=ms] [time=ms] [seed=n]
+//          [metrics=on] (to time the game with its Metrics recording)
+class Benchmarks {
+
+  //rendering keeps two images per cell, bigger boards are skipped there
+  static final int MAX_RENDER_CELLS = 4000000;
+
+  int[] sizes = { 30, 100, 500, 2000, 4000 };
+  double[] densities = { 0.05, 0.2 };
+  String cases = "all";
+  long warmupNanos = 500000000L;
+  long measureNanos = 1000000000L;
+  long seed = 42;
+  long sink;
+  com.sun.management.ThreadMXBean threads =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+
+  //run the benchmarks named by the arguments
+  public static void main(String[] args) {
+    Benchmarks bench = new Benchmarks();
+    bench.configure(args);
+    bench.runAll();
+  }
+
+
+  //EFFECT: read the key=value arguments
+  void configure(String[] args) {
+    for (String arg : args) {
+      String[] kv = arg.split("=", 2);
+      if (kv.length != 2) {
+        throw new IllegalArgumentException("Expected key=value but got " + arg);
+      }
+      if (kv[0].equals("sizes")) {
+        this.sizes = Arrays.stream(kv[1].split(",")).mapToInt(Integer::parseInt).toArray();
+      }
+      else if (kv[0].equals("densities")) {
+        this.densities = Arrays.stream(kv[1].split(",")).mapToDouble(Double::parseDouble)
+            .toArray();
+      }
+      else if (kv[0].equals("cases")) {
+        this.cases = kv[1];
+      }
+      else if (kv[0].equals("warmup")) {
+        this.warmupNanos = Long.parseLong(kv[1]) * 1000000L;
+      }
+      else if (kv[0].equals("time")) {
+        this.measureNanos = Long.parseLong(kv[1]) * 1000000L;
+      }
+      else if (kv[0].equals("seed")) {
+        this.seed = Long.parseLong(kv[1]);
+      }
+      else if (kv[0].equals("metrics")) {
+        Metrics.enable(kv[1].equals("on"));
+      }
+      else {
+        throw new IllegalArgumentException("Unknown benchmark option " + kv[0]);
+      }
+    }
+  }
+
+
+  //every benchmark this harness knows
+  ArrayList<IBenchmark> allCases() {
+    ArrayList<IBenchmark> all = new ArrayList<IBenchmark>();
+    all.add(new PlaceMinesBench("placeMines-legacy", new LegacyPlacer()));
+    all.add(new PlaceMinesBench("placeMines-uniform", new UniformPlacer()));
+    all.add(new GenerateBench());
+    all.add(new LinkNeighboursBench());
+    all.add(new FloodFillBench(false));
+    all.add(new FloodFillBench(true));
+    all.add(new WorldEndsBench());
+    all.add(new MakeSceneBench(false));
+    all.add(new MakeSceneBench(true));
+    all.add(new FullGameBench());
+    all.add(new SaveLoadBench());
+    all.add(new ReplayBench());
+    all.add(new SolveBench());
+    all.add(new ProbabilityBench());
+    all.add(new NoGuessBench());
+    return all;
+  }
+
+
+  //EFFECT: run every selected benchmark on every size and density
+  //and print one line per combination
+  void runAll() {
+    System.out.println(String.format("%-20s %11s %7s %14s %14s %14s %10s",
+        "benchmark", "board", "density", "ops/s", "ns/op", "B/op", "MB/s"));
+    for (IBenchmark b : this.allCases()) {
+      if (!this.cases.equals("all")
+          && !Arrays.asList(this.cases.split(",")).contains(b.name())) {
+        continue;
+      }
+      for (int size : this.sizes) {
+        for (double density : this.densities) {
+          int mines = (int) Math.round(size * (double) size * density);
+          String board = size + "x" + size;
+          if (b.renders() && (long) size * size > MAX_RENDER_CELLS) {
+            System.out.println(String.format("%-20s %11s %7.2f %s", b.name(), board, density,
+                "skipped (too many cells to render)"));
+            continue;
+          }
+          b.setUp(size, size, mines, this.seed);
+          System.out.println(String.format("%-20s %11s %7.2f %s", b.name(), board, density,
+              this.measure(b)));
+        }
+      }
+    }
+    System.out.println("(checksum " + this.sink + ")");
+  }
+
+
+  //warm the benchmark up, then run it for the measuring time and
+  //describe its throughput and allocation
+  String measure(IBenchmark b) {
+    long tid = Thread.currentThread().getId();
+    long warmEnd = System.nanoTime() + this.warmupNanos;
+    do {
+      this.sink += b.run();
+    } while (System.nanoTime() < warmEnd);
+
+    long ops = 0;
+    long allocStart = this.threads.getThreadAllocatedBytes(tid);
+    long start = System.nanoTime();
+    long elapsed;
+    do {
+      this.sink += b.run();
+      ops += 1;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < this.measureNanos);
+    long allocated = this.threads.getThreadAllocatedBytes(tid) - allocStart;
+
+    double seconds = elapsed / 1e9;
+    return String.format("%14.1f %14.1f %14.1f %10.1f", ops / seconds, (double) elapsed / ops,
+        (double) allocated / ops, allocated / seconds / (1024 * 1024));
+  }
+}
+
+
+//represents one operation to time
+interface IBenchmark {
+
+  //the name used to select and report this benchmark
+  String name();
+
+  //check if this benchmark draws scenes
+  boolean renders();
+
+  //EFFECT: prepare a board of the given size (not timed)
+  void setUp(int rows, int cols, int mines, long seed);
+
+  //EFFECT: run the operation once, return a value that depends on its result
+  long run();
+}
+
+
+//places the mines of a fresh board
+class PlaceMinesBench implements IBenchmark {
+
+  String name;
+  IMinePlacer placer;
+  int rows;
+  int cols;
+  int mines;
+  Random rand;
+
+
+  //constructor of PlaceMinesBench
+  PlaceMinesBench(String name, IMinePlacer placer) {
+    this.name = name;
+    this.placer = placer;
+  }
+
+
+  public String name() {
+    return this.name;
+  }
+
+
+  public boolean renders() {
+    return false;
+  }
+
+
+  public void setUp(int rows, int cols, int mines, long seed) {
+    this.rows = rows;
+    this.cols = cols;
+    this.mines = mines;
+    this.rand = new Random(seed);
+  }
+
+
+  public long run() {
+    Board b = new Board(this.rows, this.cols);
+    this.placer.place(b, this.mines, this.rand);
+    return b.state[b.size() - 1];
+  }
+}
+
+
+//builds a whole board (mines and counts) on the common fork/join pool
+class GenerateBench implements IBenchmark {
+
+  ParallelBoardGenerator generator = new ParallelBoardGenerator();
+  int rows;
+  int cols;
+  int mines;
+  long seed;
+
+
+  public String name() {
+    return "generate-parallel";
+  }
+
+
+  public boolean renders() {
+    return false;
+  }
+
+
+  public void setUp(int rows, int cols, int mines, long seed) {
+    this.rows = rows;
+    this.cols = cols;
+    this.mines = mines;
+    this.seed = seed;
+  }
+
+
+  public long run() {
+    this.seed += 1;
+    return this.generator.generate(this.rows, this.cols, this.mines, this.seed).safeHidden;
+  }
+}
+
+
+//recomputes every adjacency count (what linkNeighbours does)
+class LinkNeighboursBench implements IBenchmark {
+
+  Game game;
+
+
+  public String name() {
+    return "linkNeighbours";
+  }
+
+
+  public boolean renders() {
+    return false;
+  }
+
+
+  public void setUp(int rows, int cols, int mines, long seed) {
+    this.game = null;
+    this.game = new Game(rows, cols, mines, new Random(seed), new UniformPlacer());
+  }
+
+
+  public long run() {
+    this.game.linkNeighbours();
+    return this.game.board.adjacent(0);
+  }
+}
+
+
+//reveals the largest opening of the board, then hides it again
+//(hiding only touches the revealed cells, so it costs about as much
+//as the reveal itself), either on one thread or handing openings of
+//more than PARALLEL_THRESHOLD waiting cells to the common pool
+class FloodFillBench implements IBenchmark {
+
+  static final int PARALLEL_THRESHOLD = 4096;
+
+  boolean parallel;
+  MineSweeperEngine engine;
+  int start;
+
+
+  //constructor of FloodFillBench
+  FloodFillBench(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+
+  public String name() {
+    return this.parallel ? "floodFill-parallel" : "floodFill";
+  }
+
+
+  public boolean renders() {
+    return false;
+  }
+
+
+  public void setUp(int rows, int cols, int mines, long seed) {
+    this.engine = null;
+    this.engine = new MineSweeperEngine(rows, cols, mines, new Random(seed), new UniformPlacer());
+    if (this.parallel) {
+      this.engine.useParallelReveal(ForkJoinPool.commonPool(), PARALLEL_THRESHOLD);
+    }
+    Board b = this.engine.board;
+    b.trackChanges();
+    int best = 0;
+    this.start = 0;
+    for (int i = 0; i < b.size(); i += 1) {
+      if (!b.isMine(i) && !b.isRevealed(i)) {
+        b.changed.clear();
+        int opened = this.engine.filler.reveal(i);
+        if (opened > best) {
+          best = opened;
+          this.start = i;
+        }
+      }
+    }
+    this.hideAll();
+  }
+
+
+  public long run() {
+    Board b = this.engine.board;
+    b.changed.clear();
+    int opened = this.engine.filler.reveal(this.start);
+    while (!b.changed.isEmpty()) {
+      b.state[b.changed.pop()] &= ~Board.REVEALED;
+    }
+    b.safeHidden += opened;
+    return opened;
+  }
+
+
+  //EFFECT: hide every cell of the board again
+  void hideAll() {
+    Board b = this.engine.board;
+    for (int i = 0; i < b.size(); i += 1) {
+      b.state[i] &= ~Board.REVEALED;
+    }
+    b.retally();
+    b.changed.clear();
+  }
+}
+
+
+//asks a running game whether it has ended, once per tick
+class WorldEndsBench implements IBenchmark {
+
+  Game game;
+
+
+  public String name() {
+    return "worldEnds";
+  }
+
+
+  public boolean renders() {
+    return true;
+  }
+
+
+  public void setUp(int rows, int cols, int mines, long seed) {
+    this.game = null;
+    this.game = new Game(rows, cols, mines, new Random(seed), new UniformPlacer());
+    this.game.makeScene();
+  }
+
+
+  public long run() {
+    return this.game.worldEnds().worldEnds ? 1 : 0;
+  }
+}
+
+
+//draws a frame after one flag changed, or a whole new frame
+class MakeSceneBench implements IBenchmark {
+
+  boolean full;
+  Game game;
+  int next;
+
+
+  //constructor of MakeSceneBench
+  MakeSceneBench(boolean full) {
+    this.full = full;
+  }
+
+
+  public String name() {
+    return this.full ? "makeScene-full" : "makeScene-oneClick";
+  }
+
+
+  public boolean renders() {
+    return true;
+  }
+
+
+  public void setUp(int rows, int cols, int mines, long seed) {
+    this.game = null;
+    this.game = new Game(rows, cols, mines, new Random(seed), new UniformPlacer());
+    this.game.makeScene();
+    this.next = 0;
+  }
+
+
+  public long run() {
+    if (this.full) {
+      this.game.renderer.invalidate();
+    }
+    else {
+      this.game.engine.toggleFlagCell(this.next);
+      this.next = (this.next + 1) % this.game.board.size();
+    }
+    this.game.makeScene();
+    return this.game.renderer.overdrawn;
+  }
+}
+
+
+//generates a board and plays it to the end by revealing every
+//safe cell in index order
+class FullGameBench implements IBenchmark {
+
+  int rows;
+  int cols;
+  int mines;
+  long seed;
+
+
+  public String name() {
+    return "fullGame";
+  }
+
+
+  public boolean renders() {
+    return false;
+  }
+
+
+  public void setUp(int rows, int cols, int mines, long seed) {
+    this.rows = rows;
+    this.cols = cols;
+    this.mines = mines;
+    this.seed = seed;
+  }
+
+
+  public long run() {
+    this.seed += 1;
+    MineSweeperEngine e = new MineSweeperEngine(this.rows, this.cols, this.mines,
+        new Random(this.seed), new UniformPlacer());
+    long clicks = 0;
+    for (int i = 0; i < e.board.size() && !e.isOver(); i += 1) {
+      if (!e.board.isMine(i) && !e.board.isRevealed(i)) {
+        e.revealCell(i);
+        clicks += 1;
+      }
+    }
+    return clicks;
+  }
+}
+
+
+//saves a half played board to a file and loads it back
+class SaveLoadBench implements IBenchmark {
+
+  MineSweeperEngine engine;
+  Path file;
+
+
+  public String name() {
+    return "saveLoad";
+  }
+
+
+  public boolean renders() {
+    return false;
+  }
+
+
+  public void setUp(int rows, int cols, int mines, long seed) {
+    this.engine = null;
+    this.engine = new MineSweeperEngine(rows, cols, mines, seed, new ParallelBoardGenerator());
+    for (int i = 0; i < this.engine.board.size() / 2; i += 1) {
+      this.engine.revealCell(i);
+    }
+    try {
+      this.file = Files.createTempFile("bench", ".msw");
+      this.file.toFile().deleteOnExit();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+
+  public long run() {
+    try {
+      SaveFile.save(this.engine, this.file);
+      return new SaveFile(this.file).load().cellsRemain();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+
+//replays a logged game from its first checkpoint: every mine is
+//flagged, then every safe cell is clicked in index order
+class ReplayBench implements IBenchmark {
+
+  Replay replay;
+
+
+  public String name() {
+    return "replay";
+  }
+
+
+  public boolean renders() {
+    return false;
+  }
+
+
+  public void setUp(int rows, int cols, int mines, long seed) {
+    this.replay = null;
+    MineSweeperEngine e = new MineSweeperEngine(rows, cols, mines, seed,
+        new ParallelBoardGenerator());
+    MoveLog log = new MoveLog(seed, rows, cols, mines);
+    Board b = e.board;
+    for (int i = 0; i < b.size(); i += 1) {
+      if (b.isMine(i)) {
+        log.append(b.colOf(i), b.rowOf(i), MineSweeperEngine.FLAG, i);
+        e.play(i, MineSweeperEngine.FLAG);
+      }
+    }
+    for (int i = 0; i < b.size(); i += 1) {
+      if (!b.isMine(i) && !b.isRevealed(i)) {
+        log.append(b.colOf(i), b.rowOf(i), MineSweeperEngine.REVEAL, b.size() + i);
+        e.play(i, MineSweeperEngine.REVEAL);
+      }
+    }
+    this.replay = new Replay(log, Math.max(1, log.moves / 8));
+  }
+
+
+  public long run() {
+    this.replay.seek(0);
+    this.replay.runToEnd();
+    return this.replay.position;
+  }
+}
+
+
+//solves a game from the opening around the first empty cell for as long
+//as the solver finds safe cells; the board is put back after each run
+class SolveBench implements IBenchmark {
+
+  MineSweeperEngine engine;
+  byte[] start;
+
+
+  public String name() {
+    return "solve";
+  }
+
+
+  public boolean renders() {
+    return false;
+  }
+
+
+  public void setUp(int rows, int cols, int mines, long seed) {
+    this.engine = null;
+    this.start = null;
+    this.engine = new MineSweeperEngine(rows, cols, mines, seed, new ParallelBoardGenerator());
+    Board b = this.engine.board;
+    for (int i = 0; i < b.size(); i += 1) {
+      if (!b.isMine(i) && b.adjacent(i) == 0) {
+        this.engine.revealCell(i);
+        break;
+      }
+    }
+    this.start = b.state.clone();
+  }
+
+
+  public long run() {
+    Board b = this.engine.board;
+    System.arraycopy(this.start, 0, b.state, 0, b.state.length);
+    b.retally();
+    return new Solver(this.engine).solveFully();
+  }
+}
+
+
+//works out the chance of every cell once the solver is stuck after the
+//opening around the first empty cell; the kept part counts are dropped
+//before each run, so every part is counted again
+class ProbabilityBench implements IBenchmark {
+
+  MineProbability chances;
+
+
+  public String name() {
+    return "probability";
+  }
+
+
+  public boolean renders() {
+    return false;
+  }
+
+
+  public void setUp(int rows, int cols, int mines, long seed) {
+    this.chances = null;
+    MineSweeperEngine engine = new MineSweeperEngine(rows, cols, mines, seed,
+        new ParallelBoardGenerator());
+    Board b = engine.board;
+    for (int i = 0; i < b.size(); i += 1) {
+      if (!b.isMine(i) && b.adjacent(i) == 0) {
+        engine.revealCell(i);
+        break;
+      }
+    }
+    Solver solver = new Solver(engine);
+    solver.solveFully();
+    solver.detach();
+    this.chances = new MineProbability(engine, seed);
+  }
+
+
+  public long run() {
+    this.chances.counts.clear();
+    this.chances.compute();
+    return this.chances.parts;
+  }
+}
+
+
+//builds a board without guesses from a click in the middle,
+//with a new seed each run
+class NoGuessBench implements IBenchmark {
+
+  NoGuessGenerator generator = new NoGuessGenerator();
+  int rows;
+  int cols;
+  int mines;
+  long seed;
+
+
+  public String name() {
+    return "noGuess";
+  }
+
+
+  public boolean renders() {
+    return false;
+  }
+
+
+  public void setUp(int rows, int cols, int mines, long seed) {
+    this.rows = rows;
+    this.cols = cols;
+    this.mines = mines;
+    this.seed = seed;
+  }
+
+
+  public long run() {
+    this.seed += 1;
+    return this.generator.generate(this.rows, this.cols, this.mines, this.seed,
+        this.cols / 2, this.rows / 2).cellsRemain();
+  }
+}
@@ -0,0 +1,313 @@
+//represents the state of a whole game grid packed into one byte per cell
+//the cell at column col and row row lives at index col * numRows + row
+//the low four bits of a cell hold its number of neighbouring mines,
+//the upper bits hold the mine/revealed/flagged properties;
+//which cells are neighbours is decided by the board's topology
+class Board {
+
+  static final int COUNT_MASK = 0x0F;
+  static final int MINE = 0x10;
+  static final int REVEALED = 0x20;
+  static final int FLAGGED = 0x40;
+
+  int numRows;
+  int numCols;
+  byte[] state;
+  ITopology topology;
+  int[] around;
+
+  //running totals, kept up to date by every method that changes a cell
+  int safeHidden;
+  int minesRevealed;
+  int flagCount;
+  //when true, every query of the totals is checked against a full scan
+  boolean debug;
+  //indices of the cells whose picture may have changed since the
+  //renderer last looked, or null when nobody draws this board
+  IntStack changed;
+  //for whoever follows the moves (an undo journal recording one, or a
+  //solver): the index of every cell revealed or hidden again, and
+  //-(idx + 1) for every cell whose flag was toggled; null when nobody does
+  IntStack journal;
+
+
+  //constructor of an empty board (no mines, nothing revealed)
+  //whose cells are connected by the given topology
+  Board(ITopology topology) {
+    this.numRows = topology.numRows();
+    this.numCols = topology.numCols();
+    this.state = new byte[this.numRows * this.numCols];
+    this.topology = topology;
+    this.around = new int[topology.maxDegree()];
+    this.safeHidden = this.state.length;
+    this.debug = Boolean.getBoolean("minesweeper.debug");
+  }
+
+
+  //constructor of an empty rectangular board
+  Board(int rows, int cols) {
+    this(new GridTopology(rows, cols));
+  }
+
+
+  //the number of cells on this board
+  public int size() {
+    return this.state.length;
+  }
+
+
+  //the index of the cell at the given column and row
+  public int index(int col, int row) {
+    return col * this.numRows + row;
+  }
+
+
+  //the column of the cell at the given index
+  public int colOf(int idx) {
+    return idx / this.numRows;
+  }
+
+
+  //the row of the cell at the given index
+  public int rowOf(int idx) {
+    return idx % this.numRows;
+  }
+
+
+  //check if the given column and row are inside the board
+  public boolean inBounds(int col, int row) {
+    return col >= 0 && col < this.numCols && row >= 0 && row < this.numRows;
+  }
+
+
+  //check if the cell at the given index is a mine
+  public boolean isMine(int idx) {
+    return (this.state[idx] & MINE) != 0;
+  }
+
+
+  //check if the cell at the given index is revealed
+  public boolean isRevealed(int idx) {
+    return (this.state[idx] & REVEALED) != 0;
+  }
+
+
+  //check if the cell at the given index is flagged
+  public boolean isFlagged(int idx) {
+    return (this.state[idx] & FLAGGED) != 0;
+  }
+
+
+  //the number of mines around the cell at the given index
+  public int adjacent(int idx) {
+    return this.state[idx] & COUNT_MASK;
+  }
+
+
+  //EFFECT: start recording the cells that change, for a renderer
+  //that only redraws those
+  public void trackChanges() {
+    if (this.changed == null) {
+      this.changed = new IntStack(64);
+    }
+  }
+
+
+  //EFFECT: record that the cell at the given index may look different
+  void touched(int idx) {
+    if (this.changed != null) {
+      this.changed.push(idx);
+    }
+  }
+
+
+  //EFFECT: turn the cell at the given index into a mine
+  //(the adjacency counts are refreshed by recount)
+  public void setMine(int idx) {
+    if (!this.isMine(idx)) {
+      this.state[idx] |= MINE;
+      this.tallyMine(idx, 1);
+      this.touched(idx);
+    }
+  }
+
+
+  //EFFECT: turn the cell at the given index into a mine and
+  //add one to the adjacency count of each of its neighbours
+  public void addMine(int idx) {
+    if (!this.isMine(idx)) {
+      this.state[idx] |= MINE;
+      this.tallyMine(idx, 1);
+      this.touched(idx);
+      this.shiftCounts(idx, 1);
+    }
+  }
+
+
+  //EFFECT: make the cell at the given index safe and take one
+  //off the adjacency count of each of its neighbours
+  public void clearMine(int idx) {
+    if (this.isMine(idx)) {
+      this.state[idx] &= ~MINE;
+      this.tallyMine(idx, -1);
+      this.touched(idx);
+      this.shiftCounts(idx, -1);
+    }
+  }
+
+
+  //EFFECT: move the mine at from to the safe cell at to, only the
+  //adjacency counts around the two cells are touched
+  public void moveMine(int from, int to) {
+    this.clearMine(from);
+    this.addMine(to);
+  }
+
+
+  //EFFECT: update the totals after the cell at idx gained (delta 1)
+  //or lost (delta -1) its mine
+  void tallyMine(int idx, int delta) {
+    if (this.isRevealed(idx)) {
+      this.minesRevealed += delta;
+    }
+    else {
+      this.safeHidden -= delta;
+    }
+  }
+
+
+  //EFFECT: add delta to the adjacency count of every neighbour of idx
+  void shiftCounts(int idx, int delta) {
+    int n = this.topology.neighbours(idx, this.around);
+    for (int k = 0; k < n; k += 1) {
+      this.state[this.around[k]] += delta;
+      this.touched(this.around[k]);
+    }
+  }
+
+
+  //EFFECT: mark the cell at the given index as revealed
+  public void reveal(int idx) {
+    if (!this.isRevealed(idx)) {
+      this.state[idx] |= REVEALED;
+      this.touched(idx);
+      if (this.journal != null) {
+        this.journal.push(idx);
+      }
+      if (this.isMine(idx)) {
+        this.minesRevealed += 1;
+      }
+      else {
+        this.safeHidden -= 1;
+      }
+    }
+  }
+
+
+  //EFFECT: mark the cell at the given index as hidden again (for undo)
+  public void hide(int idx) {
+    if (this.isRevealed(idx)) {
+      this.state[idx] &= ~REVEALED;
+      this.touched(idx);
+      if (this.journal != null) {
+        this.journal.push(idx);
+      }
+      if (this.isMine(idx)) {
+        this.minesRevealed -= 1;
+      }
+      else {
+        this.safeHidden += 1;
+      }
+    }
+  }
+
+
+  //EFFECT: set or clear the flag of the cell at the given index
+  public void setFlagged(int idx, boolean flagged) {
+    if (flagged != this.isFlagged(idx)) {
+      this.state[idx] ^= FLAGGED;
+      this.flagCount += flagged ? 1 : -1;
+      this.touched(idx);
+      if (this.journal != null) {
+        this.journal.push(-idx - 1);
+      }
+    }
+  }
+
+
+  //EFFECT: write the indices of the neighbours of the given cell
+  //into out (which needs room for topology.maxDegree()) and return how many there are
+  public int neighbours(int idx, int[] out) {
+    return this.topology.neighbours(idx, out);
+  }
+
+
+  //EFFECT: recompute the number of neighbouring mines of every cell
+  //and the running totals, after cells were written to directly
+  public void recount() {
+    this.topology.recount(this);
+    this.retally();
+  }
+
+
+  //the number of safe cells that are still not revealed
+  public int cellsRemain() {
+    if (this.debug) {
+      this.verifyTotals();
+    }
+    return this.safeHidden;
+  }
+
+
+  //check if any mine has been revealed
+  public boolean mineRevealed() {
+    if (this.debug) {
+      this.verifyTotals();
+    }
+    return this.minesRevealed > 0;
+  }
+
+
+  //the number of flagged cells
+  public int flagsPlaced() {
+    if (this.debug) {
+      this.verifyTotals();
+    }
+    return this.flagCount;
+  }
+
+
+  //EFFECT: recompute the running totals with a full scan of the board
+  public void retally() {
+    this.safeHidden = 0;
+    this.minesRevealed = 0;
+    this.flagCount = 0;
+    for (int i = 0; i < this.state.length; i += 1) {
+      int s = this.state[i];
+      if ((s & (MINE | REVEALED)) == 0) {
+        this.safeHidden += 1;
+      }
+      if ((s & (MINE | REVEALED)) == (MINE | REVEALED)) {
+        this.minesRevealed += 1;
+      }
+      if ((s & FLAGGED) != 0) {
+        this.flagCount += 1;
+      }
+    }
+  }
+
+
+  //check the running totals against a full scan of the board
+  //and throw if they disagree
+  public void verifyTotals() {
+    int safe = this.safeHidden;
+    int hit = this.minesRevealed;
+    int flags = this.flagCount;
+    this.retally();
+    if (safe != this.safeHidden || hit != this.minesRevealed || flags != this.flagCount) {
+      throw new IllegalStateException("Board totals out of date: counted " + safe + "/" + hit
+          + "/" + flags + " but found " + this.safeHidden + "/" + this.minesRevealed
+          + "/" + this.flagCount);
+    }
+  }
+}
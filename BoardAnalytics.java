@@ -0,0 +1,274 @@
+import java.util.Arrays;
+
+//measures how hard a board is in one pass over its cells:
+//  openings: areas of safe cells without adjacent mines, which one click
+//            opens up along with the numbers around them
+//  isolated: safe numbers next to no opening, which take a click each
+//  3BV:      openings + isolated, the least number of clicks that clear it
+//  density:  how many blocks of blockSize x blockSize cells hold each
+//            number of mines
+//openings are found with a union-find: on a rectangular grid the cells
+//are labelled a column at a time, only the labels of the current and the
+//previous column are kept, and the union-find is over those labels
+//(about one per run of empty cells in a column), so a board of 100M
+//cells needs little more than its own bytes; other topologies use a
+//union-find over every cell index
+//
+//one BoardAnalytics can measure board after board, reusing its buffers
+class BoardAnalytics {
+
+  int blockSize;
+  //what the last board measured has
+  int openings;
+  int isolated;
+  int threeBV;
+  int mines;
+  //the safe cells without adjacent mines
+  int empty;
+  //densities[k] is the number of blocks holding k mines
+  long[] densities;
+
+  //the union-find: parent of each label (or cell index)
+  int[] parent;
+  int labels;
+  int[] previous;
+  int[] current;
+  int[] blockMines;
+  int[] around;
+
+
+  //constructor of BoardAnalytics counting mines in blocks of the given size
+  BoardAnalytics(int blockSize) {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("Blocks must be at least 1 cell wide");
+    }
+    this.blockSize = blockSize;
+    this.densities = new long[blockSize * blockSize + 1];
+    this.parent = new int[64];
+  }
+
+
+  //the measures of the given board, with blocks of 8 x 8 cells
+  static BoardAnalytics of(Board board) {
+    return new BoardAnalytics(8).measure(board);
+  }
+
+
+  //EFFECT: measure the given board, return this
+  public BoardAnalytics measure(Board board) {
+    this.openings = 0;
+    this.isolated = 0;
+    this.mines = 0;
+    this.empty = 0;
+    this.labels = 0;
+    Arrays.fill(this.densities, 0);
+    if (board.topology instanceof GridTopology) {
+      this.measureGrid(board);
+    }
+    else {
+      this.measureAny(board);
+    }
+    this.threeBV = this.openings + this.isolated;
+    return this;
+  }
+
+
+  //EFFECT: measure a rectangular board a column at a time
+  void measureGrid(Board board) {
+    byte[] state = board.state;
+    int rows = board.numRows;
+    int cols = board.numCols;
+    if (this.current == null || this.current.length != rows) {
+      this.previous = new int[rows];
+      this.current = new int[rows];
+      this.blockMines = new int[(rows + this.blockSize - 1) / this.blockSize];
+    }
+    Arrays.fill(this.previous, 0);
+    Arrays.fill(this.blockMines, 0);
+    int merged = 0;
+    for (int col = 0; col < cols; col += 1) {
+      int base = col * rows;
+      for (int row = 0; row < rows; row += 1) {
+        int s = state[base + row];
+        int label = 0;
+        if ((s & Board.MINE) != 0) {
+          this.mines += 1;
+          this.blockMines[row / this.blockSize] += 1;
+        }
+        else if ((s & Board.COUNT_MASK) == 0) {
+          this.empty += 1;
+          //the empty neighbours already labelled: above, and the three
+          //to the left
+          int[] prev = this.previous;
+          label = row > 0 ? this.current[row - 1] : 0;
+          for (int dy = -1; dy <= 1; dy += 1) {
+            int y = row + dy;
+            if (y >= 0 && y < rows && prev[y] != 0) {
+              if (label == 0) {
+                label = prev[y];
+              }
+              else if (this.union(label, prev[y])) {
+                merged += 1;
+              }
+            }
+          }
+          if (label == 0) {
+            label = this.newLabel();
+          }
+        }
+        else if (!BoardAnalytics.nearEmpty(state, rows, cols, col, row)) {
+          this.isolated += 1;
+        }
+        this.current[row] = label;
+      }
+      int[] swap = this.previous;
+      this.previous = this.current;
+      this.current = swap;
+      if ((col + 1) % this.blockSize == 0 || col == cols - 1) {
+        for (int k = 0; k < this.blockMines.length; k += 1) {
+          this.densities[this.blockMines[k]] += 1;
+        }
+        Arrays.fill(this.blockMines, 0);
+      }
+    }
+    this.openings = this.labels - merged;
+  }
+
+
+  //check if the safe cell at column col and row row of a grid touches
+  //a safe cell without adjacent mines
+  static boolean nearEmpty(byte[] state, int rows, int cols, int col, int row) {
+    for (int x = Math.max(col - 1, 0); x <= Math.min(col + 1, cols - 1); x += 1) {
+      for (int y = Math.max(row - 1, 0); y <= Math.min(row + 1, rows - 1); y += 1) {
+        if ((state[x * rows + y] & (Board.MINE | Board.COUNT_MASK)) == 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+
+  //EFFECT: measure a board of any topology with a union-find over its
+  //cell indices (label idx + 1 for the cell at idx)
+  void measureAny(Board board) {
+    int n = board.size();
+    if (this.parent.length < n + 1) {
+      this.parent = new int[n + 1];
+    }
+    this.around = new int[board.topology.maxDegree()];
+    int rows = board.numRows;
+    int blocksDown = (rows + this.blockSize - 1) / this.blockSize;
+    int blocksAcross = (board.numCols + this.blockSize - 1) / this.blockSize;
+    int[] blocks = new int[blocksDown * blocksAcross];
+    int merged = 0;
+    for (int i = 0; i < n; i += 1) {
+      this.parent[i + 1] = i + 1;
+      if (board.isMine(i)) {
+        this.mines += 1;
+        blocks[(i / rows / this.blockSize) * blocksDown + (i % rows) / this.blockSize] += 1;
+        continue;
+      }
+      int k = board.neighbours(i, this.around);
+      boolean empty = board.adjacent(i) == 0;
+      boolean near = false;
+      for (int j = 0; j < k; j += 1) {
+        int next = this.around[j];
+        if (!board.isMine(next) && board.adjacent(next) == 0) {
+          near = true;
+          if (empty && next < i && this.union(i + 1, next + 1)) {
+            merged += 1;
+          }
+        }
+      }
+      if (empty) {
+        this.empty += 1;
+      }
+      else if (!near) {
+        this.isolated += 1;
+      }
+    }
+    this.openings = this.empty - merged;
+    for (int count : blocks) {
+      this.densities[count] += 1;
+    }
+  }
+
+
+  //a new label in a set of its own
+  int newLabel() {
+    this.labels += 1;
+    if (this.labels == this.parent.length) {
+      this.parent = Arrays.copyOf(this.parent, this.parent.length * 2);
+    }
+    this.parent[this.labels] = this.labels;
+    return this.labels;
+  }
+
+
+  //the label standing for the set of the given label
+  //(halving the path on the way up)
+  int find(int label) {
+    while (this.parent[label] != label) {
+      this.parent[label] = this.parent[this.parent[label]];
+      label = this.parent[label];
+    }
+    return label;
+  }
+
+
+  //EFFECT: join the sets of the two labels, return false if
+  //they were one set already
+  boolean union(int a, int b) {
+    int ra = this.find(a);
+    int rb = this.find(b);
+    if (ra == rb) {
+      return false;
+    }
+    if (ra < rb) {
+      this.parent[rb] = ra;
+    }
+    else {
+      this.parent[ra] = rb;
+    }
+    return true;
+  }
+
+
+  //one line describing the last board measured
+  public String summary() {
+    StringBuilder out = new StringBuilder();
+    out.append(String.format("3BV %d, openings %d, isolated numbers %d, mines %d,"
+        + " empty cells %d; mines per %dx%d block", this.threeBV, this.openings, this.isolated,
+        this.mines, this.empty, this.blockSize, this.blockSize));
+    for (int k = 0; k < this.densities.length; k += 1) {
+      if (this.densities[k] > 0) {
+        out.append(' ').append(k).append(':').append(this.densities[k]);
+      }
+    }
+    return out.toString();
+  }
+
+
+  //measures a board from the command line: rows cols mines [seed [block]],
+  //built by ParallelBoardGenerator
+  public static void main(String[] args) {
+    if (args.length < 3) {
+      System.out.println("usage: java BoardAnalytics rows cols mines [seed [block]]");
+      return;
+    }
+    int rows = Integer.parseInt(args[0]);
+    int cols = Integer.parseInt(args[1]);
+    int mines = Integer.parseInt(args[2]);
+    long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+    int block = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+    long start = System.nanoTime();
+    Board board = new ParallelBoardGenerator().generate(rows, cols, mines, seed);
+    long built = System.nanoTime();
+    BoardAnalytics stats = new BoardAnalytics(block).measure(board);
+    long measured = System.nanoTime();
+    System.out.println(stats.summary());
+    System.out.println(String.format("built in %.1f ms, measured in %.1f ms",
+        (built - start) / 1e6, (measured - built) / 1e6));
+  }
+}
@@ -0,0 +1,136 @@
+//represents the part of a board shown in the window: the column and row
+//of the top left cell in view, how far the view is zoomed, and the size
+//of the window in pixels (a size of 0 fits the whole board, which is
+//what a game gets until it is given a window size)
+class Camera {
+
+  //the most the view can be zoomed in and out, in halvings of the cell size
+  static final int MAX_ZOOM_IN = 2;
+  static final int MAX_ZOOM_OUT = 6;
+  //cells drawn smaller than this many pixels are drawn as blocks of cells
+  static final int BLOCK_PIXELS = 4;
+
+  int numRows;
+  int numCols;
+  int left;
+  int top;
+  //0 draws cells at their own size, each step out halves it,
+  //each step in (negative zoom) doubles it
+  int zoom;
+  int viewWidth;
+  int viewHeight;
+  //counts the scrolls, zooms and resizes, so a renderer can tell
+  //that the scene it kept shows another part of the board
+  int moves;
+
+
+  //constructor of Camera looking at the top left of a board
+  //with the given size, fitting the whole board in the window
+  Camera(int rows, int cols) {
+    this.numRows = rows;
+    this.numCols = cols;
+  }
+
+
+  //the size on screen of a cell that is size pixels at zoom 0
+  public int scale(int size) {
+    if (this.zoom >= 0) {
+      return Math.max(1, size >> this.zoom);
+    }
+    return size << -this.zoom;
+  }
+
+
+  //the width of the window in pixels for cells of the given width
+  public int width(int cellWidth) {
+    if (this.viewWidth > 0) {
+      return this.viewWidth;
+    }
+    return this.numCols * this.scale(cellWidth);
+  }
+
+
+  //the height of the window in pixels for cells of the given height
+  public int height(int cellHeight) {
+    if (this.viewHeight > 0) {
+      return this.viewHeight;
+    }
+    return this.numRows * this.scale(cellHeight);
+  }
+
+
+  //the number of columns at least partly in view
+  public int visibleCols(int cellWidth) {
+    int w = this.scale(cellWidth);
+    return Math.min(this.numCols - this.left, (this.width(cellWidth) + w - 1) / w);
+  }
+
+
+  //the number of rows at least partly in view
+  public int visibleRows(int cellHeight) {
+    int h = this.scale(cellHeight);
+    return Math.min(this.numRows - this.top, (this.height(cellHeight) + h - 1) / h);
+  }
+
+
+  //the column under the given x position of the window
+  public int colAt(int x, int cellWidth) {
+    return this.left + x / this.scale(cellWidth);
+  }
+
+
+  //the row under the given y position of the window
+  public int rowAt(int y, int cellHeight) {
+    return this.top + y / this.scale(cellHeight);
+  }
+
+
+  //the number of cells on a side of the blocks the view is drawn with,
+  //1 when cells are big enough to be drawn one by one
+  public int blockSize(int cellWidth, int cellHeight) {
+    int smallest = Math.min(this.scale(cellWidth), this.scale(cellHeight));
+    if (smallest >= BLOCK_PIXELS) {
+      return 1;
+    }
+    return (BLOCK_PIXELS + smallest - 1) / smallest;
+  }
+
+
+  //EFFECT: show a window of the given size in pixels
+  public void resize(int width, int height) {
+    this.viewWidth = width;
+    this.viewHeight = height;
+    this.moves += 1;
+  }
+
+
+  //EFFECT: move the view by the given number of columns and rows,
+  //keeping at least one cell of the board in view
+  public void scroll(int cols, int rows) {
+    int col = Math.max(0, Math.min(this.numCols - 1, this.left + cols));
+    int row = Math.max(0, Math.min(this.numRows - 1, this.top + rows));
+    if (col != this.left || row != this.top) {
+      this.left = col;
+      this.top = row;
+      this.moves += 1;
+    }
+  }
+
+
+  //EFFECT: double the size of the cells, keeping the top left cell in place
+  public void zoomIn() {
+    if (this.zoom > -MAX_ZOOM_IN) {
+      this.zoom -= 1;
+      this.moves += 1;
+    }
+  }
+
+
+  //EFFECT: halve the size of the cells, keeping the top left cell in place
+  public void zoomOut() {
+    if (this.zoom < MAX_ZOOM_OUT) {
+      this.zoom += 1;
+      this.moves += 1;
+    }
+  }
+}
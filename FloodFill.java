@@ -0,0 +1,109 @@
+//reveals a cell and, when it has no adjacent mines, the whole connected
+//area around it, using an explicit stack of cell indices instead of
+//recursion; the stack and the neighbour buffer are reused between clicks;
+//with a parallel fill set, an area whose stack of cells still to expand
+//grows past threshold is handed over to it to finish on several cores
+class FloodFill {
+
+  static final int BLOCKED = Board.MINE | Board.REVEALED | Board.FLAGGED;
+
+  Board board;
+  IntStack pending;
+  int[] around;
+  ParallelFloodFill parallel;
+  int threshold;
+
+
+  //constructor of FloodFill working on the given board
+  FloodFill(Board board) {
+    this.board = board;
+    this.pending = new IntStack(64);
+    this.around = new int[board.topology.maxDegree()];
+  }
+
+
+  //EFFECT: finish large areas with the given parallel fill once more than
+  //threshold cells are waiting to be expanded (null turns this off)
+  public void useParallel(ParallelFloodFill parallel, int threshold) {
+    this.parallel = parallel;
+    this.threshold = threshold;
+  }
+
+
+  //EFFECT: reveal the cell at the given index and keep revealing the
+  //neighbours of every revealed cell that has no adjacent mines,
+  //skipping mines and flagged cells; return how many cells were
+  //revealed that were not revealed before
+  public int reveal(int start) {
+    long began = Metrics.start();
+    this.pending.clear();
+    int revealed = this.open(start) + this.spread();
+    if (began != 0) {
+      Metrics.GAME.flood(began);
+    }
+    return revealed;
+  }
+
+
+  //EFFECT: reveal the first count cells of the given array together (a
+  //chord), as one fill spreading out from all of them at once, so areas
+  //that meet are only walked once; cells that are mines are revealed
+  //but not spread from; return how many cells were newly revealed
+  public int revealAll(int[] cells, int count) {
+    long began = Metrics.start();
+    this.pending.clear();
+    int revealed = 0;
+    for (int i = 0; i < count; i += 1) {
+      revealed += this.open(cells[i]);
+    }
+    revealed += this.spread();
+    if (began != 0) {
+      Metrics.GAME.flood(began);
+    }
+    return revealed;
+  }
+
+
+  //EFFECT: reveal the cell at the given index and have the fill spread
+  //from it if it is safe with no adjacent mines; return 1 if it was not
+  //revealed before
+  int open(int idx) {
+    int revealed = 0;
+    if (!this.board.isRevealed(idx)) {
+      this.board.reveal(idx);
+      revealed = 1;
+    }
+    if (this.board.adjacent(idx) == 0 && !this.board.isMine(idx)) {
+      this.pending.push(idx);
+    }
+    return revealed;
+  }
+
+
+  //EFFECT: reveal the neighbours of every cell waiting to be spread from,
+  //and of every revealed cell among them with no adjacent mines;
+  //return how many cells were revealed
+  int spread() {
+    byte[] state = this.board.state;
+    int revealed = 0;
+    while (!this.pending.isEmpty()) {
+      if (this.parallel != null && this.pending.size > this.threshold) {
+        revealed += this.parallel.spread(this.pending.items, this.pending.size);
+        this.pending.clear();
+        break;
+      }
+      int n = this.board.neighbours(this.pending.pop(), this.around);
+      for (int k = 0; k < n; k += 1) {
+        int next = this.around[k];
+        if ((state[next] & BLOCKED) == 0) {
+          this.board.reveal(next);
+          revealed += 1;
+          if ((state[next] & Board.COUNT_MASK) == 0) {
+            this.pending.push(next);
+          }
+        }
+      }
+    }
+    return revealed;
+  }
+}
@@ -0,0 +1,106 @@
+import java.util.Arrays;
+
+//represents the usual rectangular grid where every cell touches
+//the (up to) 8 cells around it; interior cells take their neighbours
+//from a fixed table of index offsets, border cells are bounds checked
+class GridTopology extends ATopology {
+
+  int[] offsets;
+
+
+  //constructor of GridTopology
+  GridTopology(int rows, int cols) {
+    super(rows, cols);
+    this.offsets = new int[] { -rows - 1, -rows, -rows + 1, -1, 1, rows - 1, rows, rows + 1 };
+  }
+
+
+  //a cell of the grid has at most 8 neighbours
+  public int maxDegree() {
+    return 8;
+  }
+
+
+  //EFFECT: write the neighbours of the given cell into out
+  public int neighbours(int idx, int[] out) {
+    int col = idx / this.rows;
+    int row = idx % this.rows;
+    if (col > 0 && col < this.cols - 1 && row > 0 && row < this.rows - 1) {
+      for (int k = 0; k < 8; k += 1) {
+        out[k] = idx + this.offsets[k];
+      }
+      return 8;
+    }
+    int count = 0;
+    for (int x = Math.max(col - 1, 0); x <= Math.min(col + 1, this.cols - 1); x += 1) {
+      for (int y = Math.max(row - 1, 0); y <= Math.min(row + 1, this.rows - 1); y += 1) {
+        if (x != col || y != row) {
+          out[count] = x * this.rows + y;
+          count += 1;
+        }
+      }
+    }
+    return count;
+  }
+
+
+  //EFFECT: recompute every adjacency count as a 3x3 box sum over the
+  //mine bits, done in two separable passes: each column is summed
+  //vertically once, then every cell adds up the sums of its own and the
+  //two adjacent columns (minus itself); only three column buffers are
+  //kept, and the inner loops are plain array arithmetic the JIT can vectorize
+  public void recount(Board board) {
+    this.recountColumns(board.state, 0, this.cols);
+  }
+
+
+  //EFFECT: recompute the adjacency counts of the columns from fromCol
+  //(inclusive) to toCol (exclusive), only reading the mine bits of the
+  //columns on either side, so separate ranges can be counted at once
+  void recountColumns(byte[] state, int fromCol, int toCol) {
+    byte[] prev = new byte[this.rows];
+    byte[] cur = new byte[this.rows];
+    byte[] next = new byte[this.rows];
+    if (fromCol > 0) {
+      this.columnSums(state, fromCol - 1, prev);
+    }
+    if (fromCol < toCol) {
+      this.columnSums(state, fromCol, cur);
+    }
+    for (int col = fromCol; col < toCol; col += 1) {
+      if (col + 1 < this.cols) {
+        this.columnSums(state, col + 1, next);
+      }
+      else {
+        Arrays.fill(next, (byte) 0);
+      }
+      int base = col * this.rows;
+      for (int row = 0; row < this.rows; row += 1) {
+        int s = state[base + row];
+        int mines = prev[row] + cur[row] + next[row] - ((s & Board.MINE) >> 4);
+        state[base + row] = (byte) ((s & ~Board.COUNT_MASK) | mines);
+      }
+      byte[] spare = prev;
+      prev = cur;
+      cur = next;
+      next = spare;
+    }
+  }
+
+
+  //EFFECT: write into out the number of mines among each cell of the
+  //given column and the cells directly above and below it
+  void columnSums(byte[] state, int col, byte[] out) {
+    int base = col * this.rows;
+    int last = this.rows - 1;
+    for (int row = 0; row <= last; row += 1) {
+      out[row] = (byte) ((state[base + row] & Board.MINE) >> 4);
+    }
+    for (int row = last; row > 0; row -= 1) {
+      out[row] += (byte) ((state[base + row - 1] & Board.MINE) >> 4);
+    }
+    for (int row = 0; row < last; row += 1) {
+      out[row] += (byte) ((state[base + row + 1] & Board.MINE) >> 4);
+    }
+  }
+}
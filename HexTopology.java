@@ -0,0 +1,46 @@
+//represents a grid of hexagons stored column by column, where every
+//odd column is shifted down by half a cell, so each cell touches the
+//cells above and below it and two cells in each adjacent column
+class HexTopology extends ATopology {
+
+  //constructor of HexTopology
+  HexTopology(int rows, int cols) {
+    super(rows, cols);
+  }
+
+
+  //a hexagon has at most 6 neighbours
+  public int maxDegree() {
+    return 6;
+  }
+
+
+  //EFFECT: write the neighbours of the given cell into out
+  public int neighbours(int idx, int[] out) {
+    int col = idx / this.rows;
+    int row = idx % this.rows;
+    int count = 0;
+    if (row > 0) {
+      out[count] = idx - 1;
+      count += 1;
+    }
+    if (row < this.rows - 1) {
+      out[count] = idx + 1;
+      count += 1;
+    }
+    //even columns touch the rows above in the adjacent columns,
+    //odd columns touch the rows below
+    int top = (col % 2 == 0) ? row - 1 : row;
+    for (int x = col - 1; x <= col + 1; x += 2) {
+      if (x >= 0 && x < this.cols) {
+        for (int y = top; y <= top + 1; y += 1) {
+          if (y >= 0 && y < this.rows) {
+            out[count] = x * this.rows + y;
+            count += 1;
+          }
+        }
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,10 @@
+import java.util.Random;
+
+//represents a strategy for placing mines on an empty board
+interface IMinePlacer {
+
+  //EFFECT: turn exactly the given number of cells of the board into mines
+  //using the given random source (the board's counts and totals are
+  //refreshed by Board.recount afterwards)
+  void place(Board board, int mines, Random rand);
+}
@@ -0,0 +1,18 @@
+//represents a way of playing games for a Simulation, one move at a time;
+//a Simulation gives each of its workers its own strategy, which plays
+//game after game on the same engine
+interface IStrategy {
+
+  //the seed to build the board of the given game from, where seed is
+  //the one the simulation picked for it
+  long seedFor(int game, long seed);
+
+  //EFFECT: get ready to play the given game, built from the given seed,
+  //on the given engine
+  void start(MineSweeperEngine engine, int game, long seed);
+
+  //EFFECT: make one move on the given engine, return how many cells it
+  //revealed (as MineSweeperEngine.play does), or -1 if there is no move
+  //left to make
+  int step(MineSweeperEngine engine);
+}
@@ -0,0 +1,20 @@
+//represents how the cells of a board are connected to each other,
+//neighbours are computed from cell indices so no cell stores a list
+interface ITopology {
+
+  //the number of rows of the boards this topology connects
+  int numRows();
+
+  //the number of columns of the boards this topology connects
+  int numCols();
+
+  //the largest number of neighbours a single cell can have
+  int maxDegree();
+
+  //EFFECT: write the indices of the neighbours of the given cell
+  //into out (which needs room for maxDegree) and return how many there are
+  int neighbours(int idx, int[] out);
+
+  //EFFECT: recompute the adjacency count of every cell of the board
+  void recount(Board board);
+}
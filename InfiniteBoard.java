@@ -0,0 +1,353 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+//a board without edges: the plane is cut into CHUNK x CHUNK chunks that
+//are only built the first time one of their cells is looked at; the mines
+//of a chunk follow from the world seed and the chunk's coordinates alone,
+//so a chunk can be thrown away and built again at any time; only the
+//most recently used chunks are kept in memory, and a chunk the player
+//changed is written to a small file (2 bits per cell) when it is dropped
+//and read back when it is needed again, so memory stays bounded however
+//far the player goes
+class InfiniteBoard {
+
+  static final int CHUNK = 64;
+  static final int CELLS = CHUNK * CHUNK;
+
+  long seed;
+  int minesPerChunk;
+  int maxChunks;
+  Path dir;
+  LinkedHashMap<Long, Chunk> chunks;
+  //a click stops spreading after this many cells, an opening on a sparse
+  //enough plane could otherwise go on forever; the cells it had still to
+  //spread from stay in pending, and resume() carries on from them
+  int revealLimit;
+
+  int revealed;
+  int flags;
+  boolean mineHit;
+
+  byte[] mineScratch;
+  byte[] bigScratch;
+  IntStack pending;
+
+
+  //constructor of InfiniteBoard with the given world seed, fraction of
+  //mines, number of chunks kept in memory, and directory for dropped chunks
+  InfiniteBoard(long seed, double density, int maxChunks, Path dir) {
+    if (density <= 0 || density >= 1) {
+      throw new IllegalArgumentException("Mine density must be between 0 and 1 but was "
+          + density);
+    }
+    this.seed = seed;
+    this.minesPerChunk = (int) Math.round(density * CELLS);
+    this.maxChunks = maxChunks;
+    this.dir = dir;
+    this.chunks = new LinkedHashMap<Long, Chunk>(maxChunks * 2, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+        if (this.size() > InfiniteBoard.this.maxChunks) {
+          InfiniteBoard.this.evict(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+    this.revealLimit = 1000000;
+    this.mineScratch = new byte[CELLS];
+    this.bigScratch = new byte[(CHUNK + 2) * (CHUNK + 2)];
+    this.pending = new IntStack(64);
+  }
+
+
+  //the key of the chunk at chunk coordinates cx and cy
+  static long key(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+  }
+
+
+  //the chunk holding the cell at x and y, building or loading it if needed
+  Chunk chunkAt(int x, int y) {
+    int cx = Math.floorDiv(x, CHUNK);
+    int cy = Math.floorDiv(y, CHUNK);
+    long k = key(cx, cy);
+    Chunk c = this.chunks.get(k);
+    if (c == null) {
+      c = this.build(cx, cy);
+      this.chunks.put(k, c);
+    }
+    return c;
+  }
+
+
+  //the index of the cell at x and y inside its chunk
+  static int local(int x, int y) {
+    return Math.floorMod(x, CHUNK) * CHUNK + Math.floorMod(y, CHUNK);
+  }
+
+
+  //the packed state of the cell at x and y
+  int cell(int x, int y) {
+    return this.chunkAt(x, y).state[local(x, y)];
+  }
+
+
+  //check if the cell at x and y is a mine
+  public boolean isMine(int x, int y) {
+    return (this.cell(x, y) & Board.MINE) != 0;
+  }
+
+
+  //check if the cell at x and y is revealed
+  public boolean isRevealed(int x, int y) {
+    return (this.cell(x, y) & Board.REVEALED) != 0;
+  }
+
+
+  //check if the cell at x and y is flagged
+  public boolean isFlagged(int x, int y) {
+    return (this.cell(x, y) & Board.FLAGGED) != 0;
+  }
+
+
+  //the number of mines around the cell at x and y
+  public int adjacent(int x, int y) {
+    return this.cell(x, y) & Board.COUNT_MASK;
+  }
+
+
+  //check if a mine has been revealed
+  public boolean lost() {
+    return this.mineHit;
+  }
+
+
+  //EFFECT: flag the hidden cell at x and y, or remove its flag
+  public void toggleFlag(int x, int y) {
+    Chunk c = this.chunkAt(x, y);
+    int i = local(x, y);
+    if ((c.state[i] & Board.FLAGGED) != 0) {
+      c.state[i] &= ~Board.FLAGGED;
+      this.flags -= 1;
+      c.modified = true;
+    }
+    else if ((c.state[i] & Board.REVEALED) == 0) {
+      c.state[i] |= Board.FLAGGED;
+      this.flags += 1;
+      c.modified = true;
+    }
+  }
+
+
+  //EFFECT: reveal the cell at x and y like a left click, spreading over
+  //cells without adjacent mines across chunk borders, for at most
+  //revealLimit cells; return how many cells were newly revealed
+  public int reveal(int x, int y) {
+    int s = this.cell(x, y);
+    if ((s & Board.FLAGGED) != 0) {
+      return 0;
+    }
+    int opened = 0;
+    if ((s & Board.REVEALED) == 0) {
+      this.open(x, y);
+      opened += 1;
+      if ((s & Board.MINE) != 0) {
+        this.mineHit = true;
+        return opened;
+      }
+    }
+    if ((s & (Board.MINE | Board.COUNT_MASK)) != 0) {
+      return opened;
+    }
+    //spread from this cell first, then from what earlier clicks left
+    this.pending.push(x);
+    this.pending.push(y);
+    return opened + this.spread(this.revealLimit - opened);
+  }
+
+
+  //check if an opening was cut short by revealLimit and can be resumed
+  public boolean spreading() {
+    return !this.pending.isEmpty();
+  }
+
+
+  //EFFECT: carry on spreading the openings cut short by revealLimit, for
+  //about limit more cells; return how many cells were revealed
+  public int resume(int limit) {
+    return this.spread(limit);
+  }
+
+
+  //EFFECT: reveal the neighbours of the cells waiting in pending (pairs
+  //of x and y), and of every cell without adjacent mines among them,
+  //until about limit cells are revealed; return how many were
+  int spread(int limit) {
+    int opened = 0;
+    while (!this.pending.isEmpty() && opened < limit) {
+      int cy = this.pending.pop();
+      int cx = this.pending.pop();
+      for (int nx = cx - 1; nx <= cx + 1; nx += 1) {
+        for (int ny = cy - 1; ny <= cy + 1; ny += 1) {
+          int ns = this.cell(nx, ny);
+          if ((ns & FloodFill.BLOCKED) == 0) {
+            this.open(nx, ny);
+            opened += 1;
+            if ((ns & Board.COUNT_MASK) == 0) {
+              this.pending.push(nx);
+              this.pending.push(ny);
+            }
+          }
+        }
+      }
+    }
+    return opened;
+  }
+
+
+  //EFFECT: set the revealed bit of the cell at x and y
+  void open(int x, int y) {
+    Chunk c = this.chunkAt(x, y);
+    c.state[local(x, y)] |= Board.REVEALED;
+    c.modified = true;
+    this.revealed += 1;
+  }
+
+
+  //EFFECT: write every changed chunk that is in memory to its file
+  public void flush() {
+    for (Chunk c : this.chunks.values()) {
+      this.evict(c);
+    }
+  }
+
+
+  //a chunk built from the seed, with the player's changes read back
+  //from its file if it was dropped before
+  Chunk build(int cx, int cy) {
+    Chunk c = new Chunk(cx, cy);
+    //the mines of the chunk and a one cell border around it
+    int side = CHUNK + 2;
+    byte[] big = this.bigScratch;
+    for (int dx = -1; dx <= 1; dx += 1) {
+      for (int dy = -1; dy <= 1; dy += 1) {
+        this.placeMines(cx + dx, cy + dy, this.mineScratch);
+        for (int lx = 0; lx < CHUNK; lx += 1) {
+          int bx = lx + dx * CHUNK + 1;
+          if (bx < 0 || bx >= side) {
+            continue;
+          }
+          for (int ly = 0; ly < CHUNK; ly += 1) {
+            int by = ly + dy * CHUNK + 1;
+            if (by >= 0 && by < side) {
+              big[bx * side + by] = this.mineScratch[lx * CHUNK + ly];
+            }
+          }
+        }
+      }
+    }
+    for (int lx = 0; lx < CHUNK; lx += 1) {
+      for (int ly = 0; ly < CHUNK; ly += 1) {
+        int mines = 0;
+        for (int bx = lx; bx <= lx + 2; bx += 1) {
+          for (int by = ly; by <= ly + 2; by += 1) {
+            mines += big[bx * side + by];
+          }
+        }
+        int self = big[(lx + 1) * side + ly + 1];
+        c.state[lx * CHUNK + ly] = (byte) ((self != 0 ? Board.MINE : 0) | (mines - self));
+      }
+    }
+    this.load(c);
+    return c;
+  }
+
+
+  //EFFECT: write into out a 1 for every mine of the chunk at cx and cy
+  //(Floyd's sampling from a random source seeded by the world seed and
+  //the chunk coordinates, so the same chunk always gets the same mines)
+  void placeMines(int cx, int cy, byte[] out) {
+    Arrays.fill(out, (byte) 0);
+    SplittableRandom rand = new SplittableRandom(this.seed
+        ^ (cx * 0x9E3779B97F4A7C15L) ^ (cy * 0xC2B2AE3D27D4EB4FL));
+    for (int j = CELLS - this.minesPerChunk; j < CELLS; j += 1) {
+      int idx = rand.nextInt(j + 1);
+      if (out[idx] != 0) {
+        idx = j;
+      }
+      out[idx] = 1;
+    }
+  }
+
+
+  //the file a dropped chunk is kept in
+  Path fileOf(Chunk c) {
+    return this.dir.resolve("chunk_" + c.cx + "_" + c.cy + ".bin");
+  }
+
+
+  //EFFECT: if the chunk was changed, write its revealed and flagged bits
+  //to its file, 4 cells to a byte
+  void evict(Chunk c) {
+    if (!c.modified) {
+      return;
+    }
+    byte[] packed = new byte[CELLS / 4];
+    for (int i = 0; i < CELLS; i += 1) {
+      int bits = (c.state[i] & (Board.REVEALED | Board.FLAGGED)) >> 5;
+      packed[i >> 2] |= (byte) (bits << ((i & 3) * 2));
+    }
+    try {
+      Files.write(this.fileOf(c), packed);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    c.modified = false;
+  }
+
+
+  //EFFECT: apply the revealed and flagged bits saved for the chunk, if any
+  void load(Chunk c) {
+    Path file = this.fileOf(c);
+    if (!Files.exists(file)) {
+      return;
+    }
+    byte[] packed;
+    try {
+      packed = Files.readAllBytes(file);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    for (int i = 0; i < CELLS; i += 1) {
+      int bits = (packed[i >> 2] >> ((i & 3) * 2)) & 3;
+      c.state[i] |= (byte) (bits << 5);
+    }
+  }
+}
+
+
+//represents the cells of one chunk of an infinite board,
+//stored column by column in the same packed form as Board
+class Chunk {
+
+  int cx;
+  int cy;
+  byte[] state;
+  boolean modified;
+
+
+  //constructor of Chunk
+  Chunk(int cx, int cy) {
+    this.cx = cx;
+    this.cy = cy;
+    this.state = new byte[InfiniteBoard.CELLS];
+  }
+}
@@ -0,0 +1,56 @@
+import java.util.Arrays;
+
+//a growable stack of ints that keeps its array between uses,
+//so clearing and refilling it does not allocate
+class IntStack {
+
+  int[] items;
+  int size;
+
+
+  //constructor of IntStack with the given initial capacity
+  IntStack(int capacity) {
+    this.items = new int[Math.max(capacity, 1)];
+    this.size = 0;
+  }
+
+
+  //EFFECT: add the given value on top of the stack
+  public void push(int value) {
+    if (this.size == this.items.length) {
+      this.items = Arrays.copyOf(this.items, this.items.length * 2);
+    }
+    this.items[this.size] = value;
+    this.size += 1;
+  }
+
+
+  //EFFECT: add every value of the given stack on top of this one
+  public void addAll(IntStack other) {
+    if (this.size + other.size > this.items.length) {
+      this.items = Arrays.copyOf(this.items, Math.max(this.items.length * 2, 
+          this.size + other.size));
+    }
+    System.arraycopy(other.items, 0, this.items, this.size, other.size);
+    this.size += other.size;
+  }
+
+
+  //EFFECT: remove and return the value on top of the stack
+  public int pop() {
+    this.size -= 1;
+    return this.items[this.size];
+  }
+
+
+  //check if there is nothing on the stack
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+
+  //EFFECT: remove every value (the array is kept for reuse)
+  public void clear() {
+    this.size = 0;
+  }
+}
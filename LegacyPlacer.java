@@ -0,0 +1,26 @@
+import java.util.Random;
+
+//places mines the way Game always has: draw a row, then a column, and
+//retry when the cell already holds a mine, so a given Random seed yields
+//the same layout as before; the board itself is used as the set of
+//placed mines, so every draw is checked in O(1)
+class LegacyPlacer implements IMinePlacer {
+
+  //EFFECT: place mines by rejection sampling over rows and columns
+  public void place(Board board, int mines, Random rand) {
+    if (mines < 0 || mines > board.size()) {
+      throw new IllegalArgumentException("Cannot place " + mines + " mines on "
+          + board.size() + " cells");
+    }
+    int placed = 0;
+    while (placed < mines) {
+      int rowAt = rand.nextInt(board.numRows);
+      int colAt = rand.nextInt(board.numCols);
+      int idx = board.index(colAt, rowAt);
+      if (!board.isMine(idx)) {
+        board.setMine(idx);
+        placed += 1;
+      }
+    }
+  }
+}
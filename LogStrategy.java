@@ -0,0 +1,57 @@
+import java.util.ArrayList;
+
+//plays recorded games again: game i of a simulation is built from the
+//seed of log i (going round the logs when there are more games) and
+//makes that log's moves; every log must be of the simulation's board
+class LogStrategy implements IStrategy {
+
+  ArrayList<MoveLog> logs;
+  MoveLog log;
+  int[] cursor;
+
+
+  //constructor of LogStrategy playing the given logs
+  LogStrategy(ArrayList<MoveLog> logs) {
+    if (logs.isEmpty()) {
+      throw new IllegalArgumentException("No logs to play");
+    }
+    this.logs = logs;
+    this.cursor = new int[1];
+  }
+
+
+  //the seed of the log the given game plays
+  public long seedFor(int game, long seed) {
+    return this.logs.get(game % this.logs.size()).seed;
+  }
+
+
+  //EFFECT: start playing the log of the given game
+  public void start(MineSweeperEngine engine, int game, long seed) {
+    this.log = this.logs.get(game % this.logs.size());
+    if (this.log.rows != engine.numRows() || this.log.cols != engine.numCols()
+        || this.log.mines != engine.numMines) {
+      throw new IllegalArgumentException("Log of a " + this.log.cols + "x" + this.log.rows
+          + " board with " + this.log.mines + " mines does not fit the simulation");
+    }
+    engine.protectFirstClick(this.log.firstClick);
+    if (this.log.undos > 0 && engine.journal == null) {
+      engine.keepUndo(Integer.MAX_VALUE);
+    }
+    this.cursor[0] = 0;
+  }
+
+
+  //EFFECT: make the next move of the log (an undo or redo reveals nothing)
+  public int step(MineSweeperEngine engine) {
+    if (this.cursor[0] >= this.log.length) {
+      return -1;
+    }
+    int x = this.log.getVarint(this.cursor);
+    int y = this.log.getVarint(this.cursor);
+    int move = this.log.getVarint(this.cursor);
+    this.log.getVarint(this.cursor);
+    int revealed = engine.play(engine.indexOf(x, y), move);
+    return move == MineSweeperEngine.UNDO || move == MineSweeperEngine.REDO ? 0 : revealed;
+  }
+}
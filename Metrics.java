@@ -0,0 +1,355 @@
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+//measures the hot paths of the game loop: how long clicks, flood fills,
+//scenes and worldEnds take (as histograms of nanoseconds), how many cells
+//each click revealed and how many images each frame placed; every click
+//and frame is also a JFR event (minesweeper.Click, minesweeper.Frame) for
+//recordings started with -XX:StartFlightRecording
+//
+//recording is off until enabled (or run with -Dminesweeper.metrics=true);
+//the hot paths then only read the enabled flag, so they neither time
+//anything nor allocate; once on, recording only adds to counters and
+//histograms without locks, from any thread
+class Metrics {
+
+  //the metrics of the game loop
+  static final Metrics GAME = new Metrics();
+
+  static volatile boolean enabled = Boolean.getBoolean("minesweeper.metrics");
+
+  //nanoseconds taken by each operation
+  Histogram click;
+  Histogram flood;
+  Histogram scene;
+  Histogram ends;
+  //cells revealed by each click
+  Histogram revealed;
+  LongAdder clicks;
+  LongAdder cells;
+  LongAdder frames;
+  LongAdder images;
+  LongAdder sceneNanos;
+
+
+  //constructor of empty Metrics
+  Metrics() {
+    this.click = new Histogram();
+    this.flood = new Histogram();
+    this.scene = new Histogram();
+    this.ends = new Histogram();
+    this.revealed = new Histogram();
+    this.clicks = new LongAdder();
+    this.cells = new LongAdder();
+    this.frames = new LongAdder();
+    this.images = new LongAdder();
+    this.sceneNanos = new LongAdder();
+  }
+
+
+  //EFFECT: turn recording on or off for every Metrics
+  static void enable(boolean on) {
+    Metrics.enabled = on;
+  }
+
+
+  //the time to pass to the recording methods below, read only when
+  //recording is on (0 otherwise)
+  static long start() {
+    return Metrics.enabled ? System.nanoTime() : 0;
+  }
+
+
+  //EFFECT: record a click with the given move on the cell at column col
+  //and row row, started at the given time, that revealed the given
+  //number of cells
+  void click(long start, int col, int row, int move, int cells) {
+    long nanos = System.nanoTime() - start;
+    this.click.record(nanos);
+    this.revealed.record(cells);
+    this.clicks.increment();
+    this.cells.add(cells);
+    if (MetricsEvents.CLICK.isEnabled()) {
+      ClickEvent event = new ClickEvent();
+      event.col = col;
+      event.row = row;
+      event.move = move;
+      event.revealed = cells;
+      event.nanos = nanos;
+      event.commit();
+    }
+  }
+
+
+  //EFFECT: record a flood fill started at the given time
+  void flood(long start) {
+    this.flood.record(System.nanoTime() - start);
+  }
+
+
+  //EFFECT: record a frame started at the given time that placed the
+  //given number of images, and whether the whole view was drawn again
+  void frame(long start, int placed, boolean full) {
+    long nanos = System.nanoTime() - start;
+    this.scene.record(nanos);
+    this.frames.increment();
+    this.images.add(placed);
+    this.sceneNanos.add(nanos);
+    if (MetricsEvents.FRAME.isEnabled()) {
+      FrameEvent event = new FrameEvent();
+      event.images = placed;
+      event.full = full;
+      event.nanos = nanos;
+      event.commit();
+    }
+  }
+
+
+  //EFFECT: record a check for the end of the world started at the given time
+  void ends(long start) {
+    this.ends.record(System.nanoTime() - start);
+  }
+
+
+  //EFFECT: forget everything recorded so far
+  void reset() {
+    this.click.reset();
+    this.flood.reset();
+    this.scene.reset();
+    this.ends.reset();
+    this.revealed.reset();
+    this.clicks.reset();
+    this.cells.reset();
+    this.frames.reset();
+    this.images.reset();
+    this.sceneNanos.reset();
+  }
+
+
+  //the metrics so far as text, one line for the counters and one per histogram
+  public String snapshot() {
+    long c = Math.max(1, this.clicks.sum());
+    long f = Math.max(1, this.frames.sum());
+    return String.format("%d clicks, %.1f cells per click, %d frames, %.1f images per frame,"
+        + " %.3f ms per scene%n", this.clicks.sum(), (double) this.cells.sum() / c,
+        this.frames.sum(), (double) this.images.sum() / f, this.sceneNanos.sum() / 1e6 / f)
+        + this.click.describe("click", "ns") + "\n"
+        + this.flood.describe("floodFill", "ns") + "\n"
+        + this.scene.describe("makeScene", "ns") + "\n"
+        + this.ends.describe("worldEnds", "ns") + "\n"
+        + this.revealed.describe("revealed", "cells");
+  }
+
+
+  //the metrics so far as one JSON object
+  public String toJson() {
+    return "{\"clicks\":" + this.clicks.sum()
+        + ",\"cellsRevealed\":" + this.cells.sum()
+        + ",\"frames\":" + this.frames.sum()
+        + ",\"images\":" + this.images.sum()
+        + ",\"sceneNanos\":" + this.sceneNanos.sum()
+        + ",\"click\":" + this.click.toJson()
+        + ",\"floodFill\":" + this.flood.toJson()
+        + ",\"makeScene\":" + this.scene.toJson()
+        + ",\"worldEnds\":" + this.ends.toJson()
+        + ",\"revealed\":" + this.revealed.toJson() + "}";
+  }
+
+
+  //EFFECT: hand a snapshot (as JSON or text) to the given consumer every
+  //given number of milliseconds, on a daemon thread; shut the returned
+  //executor down to stop
+  public ScheduledExecutorService exportEvery(long millis, boolean json, Consumer<String> out) {
+    ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "metrics-export");
+      t.setDaemon(true);
+      return t;
+    });
+    timer.scheduleAtFixedRate(() -> out.accept(json ? this.toJson() : this.snapshot()),
+        millis, millis, TimeUnit.MILLISECONDS);
+    return timer;
+  }
+}
+
+
+//counts non-negative values in buckets that grow with the values, as
+//HdrHistogram does: values below 2 * SUB are counted exactly, and above
+//that every power of two is split into SUB buckets, so a value is known
+//to within 1 / SUB of itself; recording is one atomic increment per value
+//(plus the running count, sum and maximum), so threads never wait
+class Histogram {
+
+  static final int SUB_BITS = 4;
+  static final int SUB = 1 << SUB_BITS;
+  //enough buckets for any long
+  static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+  AtomicLongArray counts;
+  LongAdder count;
+  LongAdder sum;
+  AtomicLong max;
+
+
+  //constructor of an empty Histogram
+  Histogram() {
+    this.counts = new AtomicLongArray(BUCKETS);
+    this.count = new LongAdder();
+    this.sum = new LongAdder();
+    this.max = new AtomicLong();
+  }
+
+
+  //the bucket the given value is counted in
+  static int bucketOf(long value) {
+    int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+    return (shift << SUB_BITS) + (int) (value >>> shift);
+  }
+
+
+  //the largest value counted in the given bucket
+  static long highestIn(int bucket) {
+    if (bucket < 2 * SUB) {
+      return bucket;
+    }
+    int shift = (bucket >> SUB_BITS) - 1;
+    long low = (long) ((bucket & (SUB - 1)) + SUB) << shift;
+    return low + (1L << shift) - 1;
+  }
+
+
+  //EFFECT: count the given value (negative values count as 0)
+  void record(long value) {
+    long v = Math.max(0, value);
+    this.counts.incrementAndGet(Histogram.bucketOf(v));
+    this.count.increment();
+    this.sum.add(v);
+    long seen = this.max.get();
+    while (v > seen && !this.max.compareAndSet(seen, v)) {
+      seen = this.max.get();
+    }
+  }
+
+
+  //the number of values counted
+  public long count() {
+    return this.count.sum();
+  }
+
+
+  //the mean of the values counted (0 for none)
+  public double mean() {
+    long n = this.count.sum();
+    return n == 0 ? 0 : (double) this.sum.sum() / n;
+  }
+
+
+  //the largest value counted
+  public long max() {
+    return this.max.get();
+  }
+
+
+  //the value the given percentage of the values counted are at most
+  //(to within the width of its bucket), 0 for none
+  public long valueAt(double percent) {
+    long n = 0;
+    for (int b = 0; b < BUCKETS; b += 1) {
+      n += this.counts.get(b);
+    }
+    long rank = Math.max(1, (long) Math.ceil(n * percent / 100));
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b += 1) {
+      seen += this.counts.get(b);
+      if (seen >= rank) {
+        return Math.min(Histogram.highestIn(b), this.max());
+      }
+    }
+    return 0;
+  }
+
+
+  //EFFECT: forget every value counted
+  void reset() {
+    for (int b = 0; b < BUCKETS; b += 1) {
+      this.counts.set(b, 0);
+    }
+    this.count.reset();
+    this.sum.reset();
+    this.max.set(0);
+  }
+
+
+  //one line describing the values counted, under the given name and unit
+  String describe(String name, String unit) {
+    return String.format("%-10s count %d, mean %.1f, p50 %d, p90 %d, p99 %d, max %d %s", name,
+        this.count(), this.mean(), this.valueAt(50), this.valueAt(90), this.valueAt(99),
+        this.max(), unit);
+  }
+
+
+  //the values counted as a JSON object
+  String toJson() {
+    return String.format(Locale.ROOT, "{\"count\":%d,\"mean\":%.1f,\"p50\":%d,\"p90\":%d,"
+        + "\"p99\":%d,\"max\":%d}", this.count(), this.mean(), this.valueAt(50), this.valueAt(90),
+        this.valueAt(99), this.max());
+  }
+}
+
+
+//the types of the JFR events of Metrics, looked up on first use (which
+//starts up JFR, so only once recording is on); events are only built
+//while a recording takes them
+class MetricsEvents {
+
+  static final EventType CLICK = EventType.getEventType(ClickEvent.class);
+  static final EventType FRAME = EventType.getEventType(FrameEvent.class);
+}
+
+
+//a JFR event for one click on the board
+@Name("minesweeper.Click")
+@Label("Click")
+@Category("MineSweeper")
+class ClickEvent extends Event {
+
+  @Label("Column")
+  int col;
+  @Label("Row")
+  int row;
+  @Label("Move")
+  int move;
+  @Label("Cells revealed")
+  int revealed;
+  @Label("Time")
+  @Timespan
+  long nanos;
+}
+
+
+//a JFR event for one scene made for a frame
+@Name("minesweeper.Frame")
+@Label("Frame")
+@Category("MineSweeper")
+class FrameEvent extends Event {
+
+  @Label("Images placed")
+  int images;
+  @Label("Whole view drawn")
+  boolean full;
+  @Label("Time")
+  @Timespan
+  long nanos;
+}
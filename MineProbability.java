@@ -0,0 +1,675 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+
+//works out the chance that each hidden cell of an engine's board is a
+//mine, given the revealed numbers and the number of mines (flags are the
+//player's guesses and are ignored)
+//
+//hidden cells next to a revealed number (the frontier) fall into parts
+//that share no number; each part's assignments that fit its numbers are
+//counted by how many mines they use (see FrontierCount), and the parts are
+//combined with the hidden cells away from every number (the interior),
+//which can hold the remaining mines in C(interior, remaining) ways (taken
+//in log space and scaled, so large boards do not overflow)
+//
+//a part's counts only depend on its cells and numbers, so they are kept
+//between calls and a move only recounts the parts it changed; a part that
+//takes more than maxNodes to count is estimated from samples instead, and
+//when there are too many frontier cells to combine exactly (past
+//maxCombine) every part is weighed on its own against the interior's
+//density, which is what the exact weights tend to on big boards
+class MineProbability {
+
+  MineSweeperEngine engine;
+  Board board;
+  //the chance of each cell being a mine (0 or 1 for revealed cells)
+  double[] chance;
+  int maxNodes;
+  //how many probes a sampled part takes, and the most steps they may take
+  int samples;
+  long sampleNodes;
+  long maxCombine;
+  SplittableRandom rand;
+  //the parts counted by the last call, by what they are made of
+  HashMap<String, FrontierCount> counts;
+  //log(n!) for n up to the size of the board, filled in when first needed
+  double[] logFactorial;
+  int stamp;
+  int[] seen;
+  int[] slot;
+  int[] around;
+  int[] aroundB;
+
+  //whether the last call was exact, and what it took
+  boolean exact;
+  int parts;
+  int sampled;
+  int reused;
+  long lastNodes;
+  long lastNanos;
+
+
+  //constructor of MineProbability for the board of the given engine,
+  //drawing samples from the given seed
+  MineProbability(MineSweeperEngine engine, long seed) {
+    this.engine = engine;
+    this.board = engine.board;
+    int n = this.board.size();
+    this.chance = new double[n];
+    this.maxNodes = 1 << 21;
+    this.samples = 20000;
+    this.sampleNodes = 1 << 22;
+    this.maxCombine = 1L << 24;
+    this.rand = new SplittableRandom(seed);
+    this.counts = new HashMap<String, FrontierCount>();
+    this.seen = new int[n];
+    this.slot = new int[n];
+    this.around = new int[this.board.topology.maxDegree()];
+    this.aroundB = new int[this.board.topology.maxDegree()];
+  }
+
+
+  //the chance of each cell of the board being a mine, by index; the
+  //array is reused by the next call
+  public double[] compute() {
+    long start = System.nanoTime();
+    this.stamp += 1;
+    this.exact = true;
+    this.parts = 0;
+    this.sampled = 0;
+    this.reused = 0;
+    this.lastNodes = 0;
+    Board b = this.board;
+    int hidden = 0;
+    for (int i = 0; i < b.size(); i += 1) {
+      if (b.isRevealed(i)) {
+        this.chance[i] = b.isMine(i) ? 1 : 0;
+      }
+      else {
+        hidden += 1;
+      }
+    }
+    int left = this.engine.numMines - b.minesRevealed;
+
+    HashMap<String, FrontierCount> found = new HashMap<String, FrontierCount>();
+    FrontierCount[] all = new FrontierCount[16];
+    int frontier = 0;
+    for (int i = 0; i < b.size(); i += 1) {
+      if (this.isNumber(i) && this.seen[i] != this.stamp && this.hiddenAround(i) > 0) {
+        FrontierCount part = this.collect(i, found);
+        if (part.total() == 0) {
+          //no sample fit its numbers: its cells are left to the interior
+          this.exact = false;
+          for (int cell : part.cells) {
+            this.seen[cell] = 0;
+          }
+          continue;
+        }
+        if (this.parts == all.length) {
+          all = Arrays.copyOf(all, this.parts * 2);
+        }
+        all[this.parts] = part;
+        this.parts += 1;
+        frontier += part.cells.length;
+      }
+    }
+    this.counts = found;
+    int interior = hidden - frontier;
+
+    double expected = 0;
+    if (this.parts > 0) {
+      long size = (long) (frontier + 1) * Math.max(frontier, this.parts);
+      if (size > this.maxCombine) {
+        this.exact = false;
+        expected = this.combineApart(all, interior, left);
+      }
+      else {
+        expected = this.combine(all, frontier, interior, left);
+      }
+    }
+    double inside = interior > 0 ? Math.max(0, Math.min(1, (left - expected) / interior)) : 0;
+    for (int i = 0; i < b.size(); i += 1) {
+      if (!b.isRevealed(i) && this.seen[i] != this.stamp) {
+        this.chance[i] = inside;
+      }
+    }
+    this.lastNanos = System.nanoTime() - start;
+    return this.chance;
+  }
+
+
+  //the chance of the cell at column x and row y being a mine,
+  //as of the last call to compute
+  public double chanceAt(int x, int y) {
+    return this.chance[this.engine.indexOf(x, y)];
+  }
+
+
+  //the hidden cell without a flag least likely to be a mine, as of the
+  //last call to compute (the lowest index among equals), or -1 if none
+  public int safest() {
+    int best = -1;
+    for (int i = 0; i < this.board.size(); i += 1) {
+      if (!this.board.isRevealed(i) && !this.board.isFlagged(i)
+          && (best < 0 || this.chance[i] < this.chance[best])) {
+        best = i;
+      }
+    }
+    return best;
+  }
+
+
+  //check if the cell at idx is a revealed number
+  boolean isNumber(int idx) {
+    return this.board.isRevealed(idx) && !this.board.isMine(idx);
+  }
+
+
+  //the number of hidden neighbours of the cell at idx
+  int hiddenAround(int idx) {
+    int n = this.board.neighbours(idx, this.around);
+    int count = 0;
+    for (int k = 0; k < n; k += 1) {
+      if (!this.board.isRevealed(this.around[k])) {
+        count += 1;
+      }
+    }
+    return count;
+  }
+
+
+  //EFFECT: gather the part of the frontier that the number at start
+  //belongs to, marking its cells and numbers seen; return its counts,
+  //reused from the last call when it has not changed, and record them
+  //in found
+  FrontierCount collect(int start, HashMap<String, FrontierCount> found) {
+    Board b = this.board;
+    IntStack cells = new IntStack(16);
+    IntStack numbers = new IntStack(16);
+    IntStack pending = new IntStack(16);
+    pending.push(start);
+    this.seen[start] = this.stamp;
+    while (!pending.isEmpty()) {
+      int c = pending.pop();
+      numbers.push(c);
+      int n = b.neighbours(c, this.around);
+      for (int k = 0; k < n; k += 1) {
+        int cell = this.around[k];
+        if (!b.isRevealed(cell) && this.seen[cell] != this.stamp) {
+          this.seen[cell] = this.stamp;
+          this.slot[cell] = cells.size;
+          cells.push(cell);
+          int m = b.neighbours(cell, this.aroundB);
+          for (int j = 0; j < m; j += 1) {
+            int other = this.aroundB[j];
+            if (this.seen[other] != this.stamp && this.isNumber(other)) {
+              this.seen[other] = this.stamp;
+              pending.push(other);
+            }
+          }
+        }
+      }
+    }
+
+    int[] cellList = Arrays.copyOf(cells.items, cells.size);
+    int[][] numberCells = new int[numbers.size][];
+    int[] needed = new int[numbers.size];
+    StringBuilder key = new StringBuilder();
+    for (int cell : cellList) {
+      key.append(cell).append(',');
+    }
+    for (int i = 0; i < numbers.size; i += 1) {
+      int c = numbers.items[i];
+      int n = b.neighbours(c, this.around);
+      int u = 0;
+      needed[i] = b.adjacent(c);
+      for (int k = 0; k < n; k += 1) {
+        int cell = this.around[k];
+        if (!b.isRevealed(cell)) {
+          this.around[u] = this.slot[cell];
+          u += 1;
+        }
+        else if (b.isMine(cell)) {
+          needed[i] -= 1;
+        }
+      }
+      numberCells[i] = Arrays.copyOf(this.around, u);
+      Arrays.sort(numberCells[i]);
+      key.append('|').append(needed[i]);
+      for (int k = 0; k < u; k += 1) {
+        key.append(',').append(numberCells[i][k]);
+      }
+    }
+
+    String name = key.toString();
+    FrontierCount part = this.counts.get(name);
+    if (part != null) {
+      this.reused += 1;
+    }
+    else {
+      part = new FrontierCount(cellList, numberCells, needed);
+      if (!part.enumerate(this.maxNodes)) {
+        part.sample(this.samples, this.sampleNodes, this.rand);
+        this.sampled += 1;
+      }
+      this.lastNodes += part.nodes;
+    }
+    this.exact = this.exact && part.exact;
+    found.put(name, part);
+    return part;
+  }
+
+
+  //log of the number of ways to choose r of n things, -infinity if there are none
+  double logChoose(int n, int r) {
+    if (r < 0 || r > n) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    if (this.logFactorial == null || this.logFactorial.length <= n) {
+      int size = Math.max(n + 1, this.board.size() + 1);
+      this.logFactorial = new double[size];
+      for (int i = 1; i < size; i += 1) {
+        this.logFactorial[i] = this.logFactorial[i - 1] + Math.log(i);
+      }
+    }
+    return this.logFactorial[n] - this.logFactorial[r] - this.logFactorial[n - r];
+  }
+
+
+  //EFFECT: set the chance of every frontier cell, weighing each way of
+  //spreading the mines over the parts by the ways the interior can hold
+  //the rest; return the expected number of mines on the frontier
+  //
+  //after[c][t] weighs parts c and later given t mines in the parts before
+  //them, so a part's weights are its counts times sum over j of
+  //(weight of j mines in the parts before) * after[c + 1][j + k]
+  double combine(FrontierCount[] all, int frontier, int interior, int left) {
+    double[] logRest = new double[frontier + 1];
+    double top = Double.NEGATIVE_INFINITY;
+    for (int t = 0; t <= frontier; t += 1) {
+      logRest[t] = this.logChoose(interior, left - t);
+      top = Math.max(top, logRest[t]);
+    }
+    double[][] after = new double[this.parts + 1][];
+    after[this.parts] = new double[frontier + 1];
+    for (int t = 0; t <= frontier; t += 1) {
+      after[this.parts][t] = Math.exp(logRest[t] - top);
+    }
+    for (int c = this.parts - 1; c >= 0; c -= 1) {
+      double[] ways = all[c].ways;
+      double[] next = after[c + 1];
+      double[] here = new double[frontier + 1];
+      for (int t = 0; t <= frontier; t += 1) {
+        double sum = 0;
+        for (int k = 0; k < ways.length && t + k <= frontier; k += 1) {
+          sum += ways[k] * next[t + k];
+        }
+        here[t] = sum;
+      }
+      after[c] = normalized(here);
+    }
+
+    double expected = 0;
+    double[] before = new double[frontier + 1];
+    before[0] = 1;
+    int used = 0;
+    for (int c = 0; c < this.parts; c += 1) {
+      FrontierCount part = all[c];
+      double[] weight = new double[part.ways.length];
+      for (int k = 0; k < weight.length; k += 1) {
+        for (int j = 0; j <= used && j + k <= frontier; j += 1) {
+          weight[k] += before[j] * after[c + 1][j + k];
+        }
+      }
+      expected += this.setChances(part, weight);
+      double[] grown = new double[frontier + 1];
+      for (int j = 0; j <= used; j += 1) {
+        for (int k = 0; k < part.ways.length && j + k <= frontier; k += 1) {
+          grown[j + k] += before[j] * part.ways[k];
+        }
+      }
+      before = normalized(grown);
+      used += part.ways.length - 1;
+    }
+    return expected;
+  }
+
+
+  //EFFECT: set the chance of every frontier cell, weighing each part on
+  //its own by odds per mine that make the expected number of mines on the
+  //board come to the mines left; return the expected number on the frontier
+  double combineApart(FrontierCount[] all, int interior, int left) {
+    double low = -40;
+    double high = 40;
+    for (int round = 0; round < 60; round += 1) {
+      double odds = (low + high) / 2;
+      double mines = interior / (1 + Math.exp(-odds));
+      for (int c = 0; c < this.parts; c += 1) {
+        mines += all[c].expected(odds);
+      }
+      if (mines < left) {
+        low = odds;
+      }
+      else {
+        high = odds;
+      }
+    }
+    double odds = (low + high) / 2;
+    double expected = 0;
+    for (int c = 0; c < this.parts; c += 1) {
+      double[] ways = all[c].ways;
+      double top = Double.NEGATIVE_INFINITY;
+      for (int k = 0; k < ways.length; k += 1) {
+        if (ways[k] > 0) {
+          top = Math.max(top, k * odds);
+        }
+      }
+      double[] weight = new double[ways.length];
+      for (int k = 0; k < weight.length; k += 1) {
+        weight[k] = ways[k] > 0 ? Math.exp(k * odds - top) : 0;
+      }
+      expected += this.setChances(all[c], weight);
+    }
+    return expected;
+  }
+
+
+  //EFFECT: set the chance of each cell of the given part when its
+  //assignments with k mines are weighed by weight[k]; return the
+  //expected number of mines in the part
+  double setChances(FrontierCount part, double[] weight) {
+    double total = 0;
+    for (int k = 0; k < weight.length; k += 1) {
+      total += part.ways[k] * weight[k];
+    }
+    double expected = 0;
+    for (int v = 0; v < part.cells.length; v += 1) {
+      double mine = 0;
+      for (int k = 0; k < weight.length; k += 1) {
+        if (part.mineWays[k] != null) {
+          mine += part.mineWays[k][v] * weight[k];
+        }
+      }
+      double p = total > 0 ? mine / total : 0;
+      this.chance[part.cells[v]] = p;
+      expected += p;
+    }
+    return expected;
+  }
+
+
+  //the given weights scaled so the largest is 1 (left alone if all are 0)
+  static double[] normalized(double[] weights) {
+    double top = 0;
+    for (double w : weights) {
+      top = Math.max(top, w);
+    }
+    if (top > 0) {
+      for (int i = 0; i < weights.length; i += 1) {
+        weights[i] /= top;
+      }
+    }
+    return weights;
+  }
+}
+
+
+//the assignments of mines to one part of the frontier that fit its
+//numbers, counted by how many mines they use: ways[k] assignments use k
+//mines, and mineWays[k][v] of them put one on cell v; counted exactly by
+//a search, or estimated by random probes (a row of mineWays is only
+//made once an assignment with that many mines is found) (Knuth's estimator: a probe
+//follows random choices among the values that still fit, and an
+//assignment it reaches is counted 2^(number of real choices) times, which
+//is on average exactly once per assignment)
+class FrontierCount {
+
+  int[] cells;
+  int[][] numberCells;
+  int[] needed;
+  int[][] cellNumbers;
+  double[] ways;
+  double[][] mineWays;
+  boolean exact;
+  long nodes;
+  //during the search: the value of each cell, and per number the
+  //mines given so far and the cells still open
+  int[] value;
+  int[] given;
+  int[] open;
+  int mines;
+  long budget;
+  //the counts of the samples are scaled by 2^-scale
+  int scale;
+
+
+  //constructor of FrontierCount for the given cells and numbers: number i
+  //needs needed[i] mines among the cells at the slots in numberCells[i]
+  FrontierCount(int[] cells, int[][] numberCells, int[] needed) {
+    this.cells = cells;
+    this.numberCells = numberCells;
+    this.needed = needed;
+    int vars = cells.length;
+    int[] degree = new int[vars];
+    for (int[] touched : numberCells) {
+      for (int v : touched) {
+        degree[v] += 1;
+      }
+    }
+    this.cellNumbers = new int[vars][];
+    for (int v = 0; v < vars; v += 1) {
+      this.cellNumbers[v] = new int[degree[v]];
+      degree[v] = 0;
+    }
+    for (int i = 0; i < numberCells.length; i += 1) {
+      for (int v : numberCells[i]) {
+        this.cellNumbers[v][degree[v]] = i;
+        degree[v] += 1;
+      }
+    }
+    this.ways = new double[vars + 1];
+    this.mineWays = new double[vars + 1][];
+    this.value = new int[vars];
+    this.given = new int[numberCells.length];
+    this.open = new int[numberCells.length];
+  }
+
+
+  //EFFECT: count every assignment, giving up after maxNodes steps (a
+  //found assignment costs a step per cell); return whether it finished
+  boolean enumerate(long maxNodes) {
+    this.reset();
+    this.budget = maxNodes;
+    //a part with more cells than that cannot be counted in time
+    this.exact = (long) this.cells.length * 2 <= maxNodes && this.assign();
+    if (!this.exact) {
+      Arrays.fill(this.ways, 0);
+      Arrays.fill(this.mineWays, null);
+    }
+    return this.exact;
+  }
+
+
+  //EFFECT: estimate the counts from the given number of random probes,
+  //stopping early once the probes have taken maxNodes steps
+  void sample(int probes, long maxNodes, SplittableRandom rand) {
+    this.exact = false;
+    this.scale = 0;
+    int vars = this.cells.length;
+    long stop = this.nodes + maxNodes;
+    for (int p = 0; p < probes && this.nodes < stop; p += 1) {
+      this.reset();
+      int choices = 0;
+      int v = 0;
+      while (v < vars) {
+        this.nodes += 1;
+        boolean zero = this.fits(v, 0);
+        boolean one = this.fits(v, 1);
+        if (!zero && !one) {
+          break;
+        }
+        int val = one ? 1 : 0;
+        if (zero && one) {
+          choices += 1;
+          val = rand.nextInt(2);
+        }
+        this.set(v, val, 1);
+        v += 1;
+      }
+      if (v == vars) {
+        if (choices > this.scale) {
+          this.rescale(choices);
+        }
+        this.record(Math.scalb(1.0, choices - this.scale));
+      }
+    }
+  }
+
+
+  //EFFECT: count everything so far in units of 2^scale
+  void rescale(int scale) {
+    int shift = this.scale - scale;
+    for (int k = 0; k < this.ways.length; k += 1) {
+      this.ways[k] = Math.scalb(this.ways[k], shift);
+      double[] row = this.mineWays[k];
+      for (int v = 0; row != null && v < row.length; v += 1) {
+        row[v] = Math.scalb(row[v], shift);
+      }
+    }
+    this.scale = scale;
+  }
+
+
+  //EFFECT: clear the values given to the cells
+  void reset() {
+    Arrays.fill(this.value, 0);
+    Arrays.fill(this.given, 0);
+    for (int i = 0; i < this.open.length; i += 1) {
+      this.open[i] = this.numberCells[i].length;
+    }
+    this.mines = 0;
+  }
+
+
+  //the total weight of every assignment counted
+  double total() {
+    double sum = 0;
+    for (double w : this.ways) {
+      sum += w;
+    }
+    return sum;
+  }
+
+
+  //log of the weight of the assignments with k mines, for every k, when
+  //each mine multiplies the weight by e^odds (-infinity where there are none)
+  double[] logWeights(double odds) {
+    double[] out = new double[this.ways.length];
+    for (int k = 0; k < out.length; k += 1) {
+      out[k] = Math.log(this.ways[k]) + k * odds;
+    }
+    return out;
+  }
+
+
+  //the expected number of mines in this part when each mine
+  //multiplies the weight of an assignment by e^odds
+  double expected(double odds) {
+    double[] logWays = this.logWeights(odds);
+    double top = Double.NEGATIVE_INFINITY;
+    for (double w : logWays) {
+      top = Math.max(top, w);
+    }
+    double total = 0;
+    double mines = 0;
+    for (int k = 0; k < logWays.length; k += 1) {
+      double w = Math.exp(logWays[k] - top);
+      total += w;
+      mines += k * w;
+    }
+    return total > 0 ? mines / total : 0;
+  }
+
+
+  //EFFECT: count the given weight for the assignment the cells have now
+  void record(double weight) {
+    this.ways[this.mines] += weight;
+    if (this.mineWays[this.mines] == null) {
+      this.mineWays[this.mines] = new double[this.cells.length];
+    }
+    double[] row = this.mineWays[this.mines];
+    for (int v = 0; v < this.cells.length; v += 1) {
+      row[v] += weight * this.value[v];
+    }
+  }
+
+
+  //EFFECT: try both values for every cell in order, counting the
+  //assignments that fit every number; return false if the budget ran out
+  //(a search with an explicit stack: tried[v] values of cell v have been
+  //tried, and the cells before v hold the values being tried now, so a
+  //part of any size fits)
+  boolean assign() {
+    int vars = this.cells.length;
+    int[] tried = new int[vars + 1];
+    int v = 0;
+    while (v >= 0) {
+      if (v == vars) {
+        this.nodes += vars;
+        this.record(1);
+        if (this.nodes > this.budget) {
+          return false;
+        }
+        v -= 1;
+        if (v >= 0) {
+          this.set(v, tried[v] - 1, -1);
+        }
+      }
+      else if (tried[v] == 2) {
+        v -= 1;
+        if (v >= 0) {
+          this.set(v, tried[v] - 1, -1);
+        }
+      }
+      else {
+        int val = tried[v];
+        tried[v] += 1;
+        this.nodes += 1;
+        if (this.nodes > this.budget) {
+          return false;
+        }
+        if (this.fits(v, val)) {
+          this.set(v, val, 1);
+          v += 1;
+          tried[v] = 0;
+        }
+      }
+    }
+    return true;
+  }
+
+
+  //check if giving cell v the value val keeps every number it
+  //touches satisfiable
+  boolean fits(int v, int val) {
+    for (int i : this.cellNumbers[v]) {
+      int m = this.given[i] + val;
+      if (m > this.needed[i] || m + this.open[i] - 1 < this.needed[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  //EFFECT: give (dir 1) or take back (dir -1) the value val of cell v
+  void set(int v, int val, int dir) {
+    this.value[v] = dir > 0 ? val : 0;
+    this.mines += dir * val;
+    for (int i : this.cellNumbers[v]) {
+      this.given[i] += dir * val;
+      this.open[i] -= dir;
+    }
+  }
+}
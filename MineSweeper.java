@@ -1,5 +1,9 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import tester.*;
 import javalib.impworld.*;
@@ -10,95 +14,173 @@ import javalib.worldimages.*;
 
 
 //the class represents the real game
+//the rules are played by a MineSweeperEngine, Game only turns mouse
+//clicks into engine moves and draws the engine's board;
+//Cell objects are only built as views of single cells;
+//the camera decides which part of the board is in the window
 class Game extends World {
 
+  //how far one arrow key press scrolls, in pixels
+  static final int SCROLL_PIXELS = 100;
+
   int numRows;
   int numCols; 
-  Random rand;
-  ArrayList<ArrayList<Cell>> cells;
+  MineSweeperEngine engine;
+  Board board;
+  BoardRenderer renderer;
+  Camera camera;
   int cellWidth = 25;
   int cellHeight = 25;
+  //every move made through the mouse, for games built from a seed
+  //(null otherwise), and the ticks counted so far
+  MoveLog log;
+  int tick;
+  //how many bytes of moves are kept for undo
+  static final int UNDO_BYTES = 1 << 20;
+  //the chances of cells being mines, shown over the hidden cells while
+  //hints are on (the h key), null while they are off
+  MineProbability hints;
+
+
+  //constructor of Game drawing the given engine
+  Game(MineSweeperEngine engine) {
+    this.engine = engine;
+    this.board = engine.board;
+    this.numRows = engine.numRows();
+    this.numCols = engine.numCols();
+    this.renderer = new BoardRenderer(this.board, SpriteCache.SHARED);
+    this.camera = new Camera(this.numRows, this.numCols);
+    this.engine.keepUndo(UNDO_BYTES);
+  }
 
 
   //constructor of Game
-  Game(int rows, int cols, int mines, Random r) {
-    this.numRows = rows;
-    this.numCols = cols;
-    this.rand = r;
+  Game(int rows, int cols, int mines, Random r, IMinePlacer placer) {
+    this(new MineSweeperEngine(rows, cols, mines, r, placer));
+  }
 
-    //initialize the board at first
-    this.cells = new ArrayList<ArrayList<Cell>>();
-    for (int i = 0; i < cols; i += 1) {
-      ArrayList<Cell> row = new ArrayList<>(); 
-      for (int j = 0; j < rows; j += 1) {
-        row.add(new Cell(false));
-      }
-      this.cells.add(row);
-    }
-    //place the mines inside the cells
-    this.placeMines(rows, cols, mines);
-    this.linkNeighbours();
 
+  //convenience constructor that keeps the layouts
+  //earlier versions produced for a given Random
+  Game(int rows, int cols, int mines, Random r) {
+    this(rows, cols, mines, r, new LegacyPlacer());
   }
 
 
 
 
   //convenience constructor(for testing related to randomness)
+  //the board is built from a random seed, so the game can be replayed
   Game(int rows, int cols, int mines) {
-    this(rows, cols, mines, new Random());
+    this(rows, cols, mines, new Random().nextLong());
+  }
+
+
+  //constructor of Game on the board built from the given seed,
+  //logging every move
+  Game(int rows, int cols, int mines, long seed) {
+    this(rows, cols, mines, seed, MineSweeperEngine.FIRST_CLICK_ANY);
+  }
+
+
+  //constructor of Game on the board built from the given seed, logging
+  //every move, whose first click is protected as the given mode says
+  //(see MineSweeperEngine.FIRST_CLICK_ANY and friends)
+  Game(int rows, int cols, int mines, long seed, int firstClick) {
+    this(new MineSweeperEngine(rows, cols, mines, seed, new ParallelBoardGenerator()));
+    this.engine.protectFirstClick(firstClick);
+    this.log = new MoveLog(seed, rows, cols, mines);
+    this.log.firstClick = firstClick;
   }
 
 
   //third convenience constructor (only for testing makeScene)
+  //copies the state of the given cells into the board
   Game(int rows, int cols, int mines, ArrayList<ArrayList<Cell>> cells) {
-    this.numRows = rows;
-    this.numCols = cols;
-    this.cells = cells;
+    this(new MineSweeperEngine(Game.boardOf(rows, cols, cells)));
+  }
+
+
+  //a board holding the state of the given cells
+  static Board boardOf(int rows, int cols, ArrayList<ArrayList<Cell>> cells) {
+    Board b = new Board(rows, cols);
+    for (int i = 0; i < cells.size(); i += 1) {
+      for (int j = 0; j < cells.get(i).size(); j += 1) {
+        Cell c = cells.get(i).get(j);
+        int idx = b.index(i, j);
+        if (c.isMine) {
+          b.setMine(idx);
+        }
+        if (c.isClicked) {
+          b.reveal(idx);
+        }
+        b.setFlagged(idx, c.isFlagged);
+      }
+    }
+    b.recount();
+    return b;
   }
 
 
   //EFFECT: randomly place the mines within the game grid
   public void placeMines(int rows, int cols, int mines) {
-    ArrayList<Posn> minesLocation = new ArrayList<Posn>();
+    this.engine.placeMines(mines);
+  }
 
-    while (minesLocation.size() < mines) {
-      int rowAt = rand.nextInt(rows);
-      int colAt = rand.nextInt(cols);
-      Posn position = new Posn(colAt, rowAt);
 
-      if (!minesLocation.contains(position)) {
-        minesLocation.add(position);
-        cells.get(colAt).set(rowAt, new Cell(true));
-      }
+  //the 3BV, openings, isolated numbers and mine densities of the board
+  public BoardAnalytics analytics() {
+    return BoardAnalytics.of(this.board);
+  }
+
+
+  //build a Cell view of the cell at the given column and row
+  //the view is a copy: changing it does not change the board
+  public Cell cellAt(int col, int row) {
+    int idx = this.board.index(col, row);
+    ArrayList<Cell> neighbours = new ArrayList<Cell>();
+    int[] around = new int[this.board.topology.maxDegree()];
+    int n = this.board.neighbours(idx, around);
+    for (int k = 0; k < n; k += 1) {
+      neighbours.add(new Cell(this.board.isMine(around[k])));
     }
+    return new Cell(neighbours, this.board.isRevealed(idx), this.board.isFlagged(idx),
+        this.board.isMine(idx), this.board.adjacent(idx));
+  }
+
+
+  //draw the cell at the given index, reading its adjacency
+  //count from the board instead of walking its neighbours
+  public WorldImage drawCell(int idx, int width, int height) {
+    return this.renderer.drawCell(idx, width, height);
   }
 
 
   //handles the drawing of the grid
-  //make the scene of a customized game board
+  //make the scene of a customized game board, only the cells
+  //that changed since the last frame are drawn again
   public WorldScene makeScene() {
-    WorldScene w = new WorldScene(cellWidth * numRows, cellHeight * numCols);
+    long start = Metrics.start();
+    int placed = this.renderer.placed;
+    WorldScene scene = this.renderer.render(this.camera, cellWidth, cellHeight);
+    if (start != 0) {
+      Metrics.GAME.frame(start, this.renderer.placed - placed, this.renderer.redrawn);
+    }
+    return scene;
+  }
 
-    for (int i = 0; i < numCols; i += 1) {
-      for (int j = 0; j < numRows; j += 1) {
-        Cell currentCell = cells.get(i).get(j);
-        int xLoc = (i * cellWidth) + (cellWidth / 2);
-        int yLoc = (j * cellHeight) + (cellHeight / 2);
-        //Creates a black outline around cells:
-        w.placeImageXY(new RectangleImage(cellWidth, cellHeight, 
-            "solid", Color.BLACK), xLoc, yLoc);
-        w.placeImageXY(currentCell.draw(cellWidth - 2, cellHeight - 2), xLoc, yLoc);
 
-      }
-    }
-    return w; 
+  //EFFECT: show the board in a window of the given size in pixels
+  //instead of a window fitting the whole board
+  public void viewport(int width, int height) {
+    this.camera.resize(width, height);
   }
 
 
   //determine whether the game is win
+  //(the board keeps its totals up to date, so this does not scan)
   public boolean win() {
-    return (this.cellsRemain() == 0);
+    return this.engine.won();
   }
 
 
@@ -107,127 +189,675 @@ class Game extends World {
 
   //determine whether the game is lost
   public boolean lost() {
-    for (int i = 0; i < this.numCols; i += 1) {
-      for (int j = 0; j < this.numRows; j += 1) { 
-        Cell curCell = this.cells.get(i).get(j);
-        if (curCell.isCellLoss()) {
-          return true;
-        }
-      }
-    }
-    return false;
+    return this.engine.lost();
   }
 
 
   //check how many flat cells are unclicked
   public int cellsRemain() {
-    int remain = 0;
-    for (int i = 0; i < this.numCols; i++) {
-      for (int j = 0; j < this.numRows; j++) {
-        Cell curCell = this.cells.get(i).get(j);
-        remain += curCell.singleCellRemain();
-      }
-    }
-    return remain;
+    return this.engine.cellsRemain();
   }
 
 
 
-  //EFFECT: link the neighbours between each other
+  //EFFECT: refresh the number of neighbouring mines of every cell,
+  //neighbours themselves are computed from the grid position
   public void linkNeighbours() {
-    for (int i = 0; i < this.numCols; i += 1) {
-      for (int j = 0; j < this.numRows; j += 1) { 
-        Cell curCell = this.cells.get(i).get(j); 
-        int xMin = i - 1; 
-        if (xMin < 0) { 
-          xMin = 0; 
-        }
-        int xMax = i + 1; 
-        if (xMax > numCols - 1) {
-          xMax = numCols - 1;
-        }
-        int yMin = j - 1; 
-        if (yMin < 0) {
-          yMin = 0;
-        }
-        int yMax = j + 1; 
-        if (yMax > numRows - 1) {
-          yMax = numRows - 1;
-        }
-        for (int x = xMin; x <= xMax; x += 1) {
-          for (int y = yMin; y <= yMax; y += 1) { 
-            Cell neighbour = this.cells.get(x).get(y); 
-            if (!(x == i && y == j)) { 
-              curCell.addNeighbour(neighbour); 
-            }
-          }
-        }
-      }
-    }
+    this.board.recount();
+  }
+
+
+  //EFFECT: reveal the cell at the given index and its neighbours
+  //until cells with adjacent mines are reached, return how many
+  //cells were newly revealed
+  public int floodFill(int idx) {
+    return this.engine.filler.reveal(idx);
   }
 
   
 
 
-  //EFFECT: handles the mouse event, the actual implementation
-  //is delegated to Cell class
+  //EFFECT: handles the mouse event by finding the clicked cell
+  //under the camera
   public void onMouseClicked(Posn pos, String buttonName) {
-    if (pos.x > 0 && pos.x < (cellWidth * numCols) 
-        && pos.y > 0 && pos.y < (cellHeight * numRows)) {
-      Cell curCell = this.cells.get(pos.x / cellWidth).get(pos.y / cellHeight);
-      curCell.onMouseDelegate(buttonName);
+    if (pos.x > 0 && pos.x < this.camera.width(cellWidth) 
+        && pos.y > 0 && pos.y < this.camera.height(cellHeight)) {
+      int col = this.camera.colAt(pos.x, cellWidth);
+      int row = this.camera.rowAt(pos.y, cellHeight);
+      if (this.board.inBounds(col, row)) {
+        this.onCellClicked(this.board.index(col, row), buttonName);
+      }
     } 
   }
 
 
+  //EFFECT: scroll the view with the arrow keys, zoom in with + (or =)
+  //and out with -
+  public void onKeyEvent(String key) {
+    int cols = Math.max(1, SCROLL_PIXELS / this.camera.scale(cellWidth));
+    int rows = Math.max(1, SCROLL_PIXELS / this.camera.scale(cellHeight));
+    if (key.equals("left")) {
+      this.camera.scroll(-cols, 0);
+    }
+    if (key.equals("right")) {
+      this.camera.scroll(cols, 0);
+    }
+    if (key.equals("up")) {
+      this.camera.scroll(0, -rows);
+    }
+    if (key.equals("down")) {
+      this.camera.scroll(0, rows);
+    }
+    if (key.equals("+") || key.equals("=")) {
+      this.camera.zoomIn();
+    }
+    if (key.equals("-")) {
+      this.camera.zoomOut();
+    }
+    if (key.equals("u")) {
+      this.takeBack(MineSweeperEngine.UNDO);
+    }
+    if (key.equals("r")) {
+      this.takeBack(MineSweeperEngine.REDO);
+    }
+    if (key.equals("h")) {
+      this.hints = this.hints == null ? new MineProbability(this.engine, 0) : null;
+      this.refreshHints();
+    }
+  }
+
+
+  //EFFECT: work the hints out again after the board changed, and have
+  //the whole view drawn again with them (every chance can change)
+  void refreshHints() {
+    this.renderer.hints = this.hints == null ? null : this.hints.compute();
+    this.renderer.invalidate();
+  }
+
+
+  //EFFECT: undo or redo the last move, logging it if it did something
+  void takeBack(int move) {
+    if (this.engine.play(0, move) != 0 && this.log != null) {
+      this.log.append(0, 0, move, this.tick);
+    }
+    if (this.hints != null) {
+      this.refreshHints();
+    }
+  }
+
+
+  //EFFECT: turn a click on the cell at the given index into the
+  //matching engine move, and log it
+  public void onCellClicked(int idx, String buttonName) {
+    int move = Game.moveOf(buttonName);
+    if (move < 0) {
+      return;
+    }
+    long start = Metrics.start();
+    if (this.log != null) {
+      this.log.append(this.board.colOf(idx), this.board.rowOf(idx), move, this.tick);
+    }
+    int revealed = this.engine.play(idx, move);
+    if (this.hints != null) {
+      this.refreshHints();
+    }
+    if (start != 0) {
+      Metrics.GAME.click(start, this.board.colOf(idx), this.board.rowOf(idx), move, revealed);
+    }
+  }
+
+
+  //the engine move made by the given mouse button, -1 for none
+  static int moveOf(String buttonName) {
+    if (buttonName.equals("LeftButton")) {
+      return MineSweeperEngine.REVEAL;
+    }
+    if (buttonName.equals("RightButton")) {
+      return MineSweeperEngine.FLAG;
+    }
+    if (buttonName.equals("MiddleButton")) {
+      return MineSweeperEngine.CHORD;
+    }
+    return -1;
+  }
+
+
+  //EFFECT: count the ticks, so the move log knows when moves were made
+  public void onTick() {
+    this.tick += 1;
+  }
+
+
   //Method to create a scene when the player wins
   public WorldScene makeWinScene() {
-    WorldScene winScene = this.makeScene(); 
+    WorldScene winScene = this.renderer.viewScene(this.camera, cellWidth, cellHeight); 
 
     TextImage winMessage = new TextImage("NICE", 20, FontStyle.BOLD, Color.GREEN);
-    winScene.placeImageXY(winMessage, (cellWidth * numCols / 2), (cellHeight * numRows / 2));
+    winScene.placeImageXY(winMessage, this.camera.width(cellWidth) / 2,
+        this.camera.height(cellHeight) / 2);
     return winScene;
   }
 
 
   //Method to create a scene when the player loses
+  //only the mines in view are revealed, so this costs as much as the
+  //window has cells, however big the board is
   public WorldScene makeLostScene() {
-    WorldScene lostScene = this.makeScene(); 
-
-    // Reveal all mine cells
-    for (int i = 0; i < this.numCols; i++) {
-      for (int j = 0; j < this.numRows; j++) {
-        Cell curCell = this.cells.get(i).get(j);
-        if (curCell.revealFinal() == 1) {
-          lostScene.placeImageXY(curCell.draw(cellWidth, cellHeight), 
-                                  i * cellWidth + (cellWidth / 2), 
-                                  j * cellHeight + (cellHeight / 2));
+    //the cells drawn: whole blocks when zoomed out, which can reach
+    //past the last column and row in view
+    int size = this.camera.blockSize(cellWidth, cellHeight);
+    int cols = this.camera.visibleCols(cellWidth);
+    int rows = this.camera.visibleRows(cellHeight);
+    int lastCol = Math.min(this.numCols, this.camera.left + (cols + size - 1) / size * size);
+    int lastRow = Math.min(this.numRows, this.camera.top + (rows + size - 1) / size * size);
+
+    // Reveal the mine cells in view, then draw the view once with them
+    for (int i = this.camera.left; i < lastCol; i++) {
+      for (int j = this.camera.top; j < lastRow; j++) {
+        int idx = this.board.index(i, j);
+        if (this.board.isMine(idx)) {
+          this.board.reveal(idx);
         }
       }
     }
+    WorldScene lostScene = this.renderer.viewScene(this.camera, cellWidth, cellHeight);
 
     TextImage lostMessage = new TextImage("U BETTER TRY AGAIN", 20, FontStyle.BOLD, Color.RED);
-    lostScene.placeImageXY(lostMessage, (cellWidth * numCols / 2), (cellHeight * numRows / 2));
+    lostScene.placeImageXY(lostMessage, this.camera.width(cellWidth) / 2,
+        this.camera.height(cellHeight) / 2);
 
     return lostScene;
   }
 
 
   //End the world/continue based on win/loss condition
+  //(only the checks are timed; the scene of a world that goes on is not
+  //counted as a frame, as the next frame draws the board anyway)
   public WorldEnd worldEnds() {
-    if (this.win()) {
+    long start = Metrics.start();
+    boolean won = this.win();
+    boolean lost = !won && this.lost();
+    if (start != 0) {
+      Metrics.GAME.ends(start);
+    }
+    if (won) {
       return new WorldEnd(true, this.makeWinScene());
     }
-    if (this.lost()) {
+    else if (lost) {
       return new WorldEnd(true, this.makeLostScene());
     }
     else {
-      return new WorldEnd(false, this.makeScene());
+      return new WorldEnd(false, this.renderer.render(this.camera, cellWidth, cellHeight));
+    }
+  }
+
+
+
+}
+
+
+
+
+//the game on an InfiniteBoard: the window shows cols x rows cells of the
+//plane starting at the cell at left and top, and the arrow keys move it
+//with no edge to stop at; openings cut short by the board's revealLimit
+//go on spreading a little every tick; a frame draws the cells in the
+//window, so it costs the same wherever on the plane the window is
+class InfiniteGame extends World {
+
+  //how many cells one arrow key press scrolls
+  static final int SCROLL_CELLS = 4;
+  //how many cells an opening cut short may spread by on each tick
+  static final int TICK_CELLS = 10000;
+
+  InfiniteBoard board;
+  int cols;
+  int rows;
+  int left;
+  int top;
+  int cellWidth = 25;
+  int cellHeight = 25;
+  SpriteCache sprites;
+
+
+  //constructor of InfiniteGame showing cols x rows cells of the given
+  //board, with the cell at 0, 0 in the middle of the window
+  InfiniteGame(InfiniteBoard board, int cols, int rows) {
+    this.board = board;
+    this.cols = cols;
+    this.rows = rows;
+    this.left = -(cols / 2);
+    this.top = -(rows / 2);
+    this.sprites = SpriteCache.SHARED;
+  }
+
+
+  //the scene showing the cells in the window
+  public WorldScene makeScene() {
+    return this.drawWindow(false);
+  }
+
+
+  //a scene with every cell in the window drawn, showing the mines
+  //among them too if showMines
+  WorldScene drawWindow(boolean showMines) {
+    WorldScene s = new WorldScene(this.cols * cellWidth, this.rows * cellHeight);
+    for (int i = 0; i < this.cols; i += 1) {
+      for (int j = 0; j < this.rows; j += 1) {
+        int state = this.board.cell(this.left + i, this.top + j);
+        boolean mine = (state & Board.MINE) != 0;
+        int xLoc = (i * cellWidth) + (cellWidth / 2);
+        int yLoc = (j * cellHeight) + (cellHeight / 2);
+        s.placeImageXY(this.sprites.outline(cellWidth, cellHeight), xLoc, yLoc);
+        s.placeImageXY(this.sprites.cell((state & Board.REVEALED) != 0 || (showMines && mine),
+            (state & Board.FLAGGED) != 0, mine, state & Board.COUNT_MASK, cellWidth - 2,
+            cellHeight - 2), xLoc, yLoc);
+      }
+    }
+    return s;
+  }
+
+
+  //EFFECT: reveal (left button) or flag (right button) the clicked cell
+  public void onMouseClicked(Posn pos, String buttonName) {
+    if (this.board.lost() || pos.x < 0 || pos.x >= this.cols * cellWidth
+        || pos.y < 0 || pos.y >= this.rows * cellHeight) {
+      return;
+    }
+    int x = this.left + pos.x / cellWidth;
+    int y = this.top + pos.y / cellHeight;
+    if (buttonName.equals("LeftButton")) {
+      this.board.reveal(x, y);
+    }
+    if (buttonName.equals("RightButton")) {
+      this.board.toggleFlag(x, y);
+    }
+  }
+
+
+  //EFFECT: move the window with the arrow keys
+  public void onKeyEvent(String key) {
+    if (key.equals("left")) {
+      this.left -= SCROLL_CELLS;
+    }
+    if (key.equals("right")) {
+      this.left += SCROLL_CELLS;
+    }
+    if (key.equals("up")) {
+      this.top -= SCROLL_CELLS;
+    }
+    if (key.equals("down")) {
+      this.top += SCROLL_CELLS;
+    }
+  }
+
+
+  //EFFECT: let openings cut short go on spreading
+  public void onTick() {
+    if (this.board.spreading()) {
+      this.board.resume(TICK_CELLS);
+    }
+  }
+
+
+  //End the world once a mine is revealed (the plane cannot be cleared)
+  public WorldEnd worldEnds() {
+    if (this.board.lost()) {
+      WorldScene lostScene = this.drawWindow(true);
+      TextImage lostMessage = new TextImage("U BETTER TRY AGAIN", 20, FontStyle.BOLD,
+          Color.RED);
+      lostScene.placeImageXY(lostMessage, this.cols * cellWidth / 2,
+          this.rows * cellHeight / 2);
+      return new WorldEnd(true, lostScene);
+    }
+    return new WorldEnd(false, this.makeScene());
+  }
+}
+
+
+
+
+//draws the part of a board in view of a camera into a scene that is
+//kept between frames: after the first frame only the cells the board
+//reports as changed (and in view) are drawn again on top of the cached
+//scene; the whole view is only redrawn when the camera moved or zoomed,
+//when the cell size changes, when too many cells have been painted over,
+//or for the final scene of a game; so a frame costs as much as the
+//window has cells, however big the board is
+class BoardRenderer {
+
+  Board board;
+  WorldScene scene;
+  //the cell size on screen, first cell, number of cells and block size
+  //of the view the cached scene shows
+  int cellWidth;
+  int cellHeight;
+  int originCol;
+  int originRow;
+  int viewCols;
+  int viewRows;
+  int block;
+  int cameraMoves;
+  //number of cells painted over the cached scene since the last full redraw
+  int overdrawn;
+  SpriteCache sprites;
+  //number of images placed on scenes so far, and whether the last render
+  //drew the whole view
+  int placed;
+  boolean redrawn;
+  //the chance of each cell being a mine, marked on hidden cells drawn
+  //one by one (null for no marks)
+  double[] hints;
+
+
+  //constructor of BoardRenderer
+  BoardRenderer(Board board, SpriteCache sprites) {
+    this.board = board;
+    this.board.trackChanges();
+    this.sprites = sprites;
+  }
+
+
+  //the scene showing what the camera sees of the board, for cells of
+  //the given size at zoom 0, reusing the scene of the previous frame
+  //when possible
+  public WorldScene render(Camera camera, int cellWidth, int cellHeight) {
+    int w = camera.scale(cellWidth);
+    int h = camera.scale(cellHeight);
+    if (this.scene == null || w != this.cellWidth || h != this.cellHeight
+        || camera.moves != this.cameraMoves || camera.left != this.originCol
+        || camera.top != this.originRow
+        || this.overdrawn + this.board.changed.size > this.viewCols * this.viewRows) {
+      this.cellWidth = w;
+      this.cellHeight = h;
+      this.cameraMoves = camera.moves;
+      this.originCol = camera.left;
+      this.originRow = camera.top;
+      this.viewCols = camera.visibleCols(cellWidth);
+      this.viewRows = camera.visibleRows(cellHeight);
+      this.block = camera.blockSize(cellWidth, cellHeight);
+      this.scene = this.viewScene(camera, cellWidth, cellHeight);
+      this.overdrawn = 0;
+      this.redrawn = true;
+      return this.scene;
+    }
+    this.redrawn = false;
+    IntStack dirty = this.board.changed;
+    while (!dirty.isEmpty()) {
+      int idx = dirty.pop();
+      int col = this.board.colOf(idx) - this.originCol;
+      int row = this.board.rowOf(idx) - this.originRow;
+      if (col < 0 || col >= this.viewCols || row < 0 || row >= this.viewRows) {
+        continue;
+      }
+      if (this.block == 1) {
+        this.placeCell(this.scene, idx, col, row, w, h);
+      }
+      else {
+        col -= col % this.block;
+        row -= row % this.block;
+        this.placeBlock(this.scene, this.originCol + col, this.originRow + row, this.block,
+            col, row, w, h);
+      }
+      this.overdrawn += 1;
+    }
+    return this.scene;
+  }
+
+
+  //EFFECT: make the next render draw the whole view again
+  public void invalidate() {
+    this.scene = null;
+  }
+
+
+  //a new scene with every cell of the board drawn once
+  //(pending changes are part of it, so they are dropped)
+  public WorldScene fullScene(int cellWidth, int cellHeight) {
+    return this.viewScene(new Camera(this.board.numRows, this.board.numCols),
+        cellWidth, cellHeight);
+  }
+
+
+  //a new scene with every cell in view of the camera drawn once, or
+  //every block of cells when the view is zoomed out that far
+  //(pending changes are part of it, so they are dropped)
+  public WorldScene viewScene(Camera camera, int cellWidth, int cellHeight) {
+    int w = camera.scale(cellWidth);
+    int h = camera.scale(cellHeight);
+    WorldScene s = new WorldScene(camera.width(cellWidth), camera.height(cellHeight));
+    int cols = camera.visibleCols(cellWidth);
+    int rows = camera.visibleRows(cellHeight);
+    int size = camera.blockSize(cellWidth, cellHeight);
+    for (int i = 0; i < cols; i += size) {
+      for (int j = 0; j < rows; j += size) {
+        if (size == 1) {
+          this.placeCell(s, this.board.index(camera.left + i, camera.top + j), i, j, w, h);
+        }
+        else {
+          this.placeBlock(s, camera.left + i, camera.top + j, size, i, j, w, h);
+        }
+      }
+    }
+    this.board.changed.clear();
+    return s;
+  }
+
+
+  //EFFECT: draw the cell at the given index with its black outline,
+  //in the given column and row of the window
+  void placeCell(WorldScene w, int idx, int col, int row, int cellWidth, int cellHeight) {
+    int xLoc = (col * cellWidth) + (cellWidth / 2);
+    int yLoc = (row * cellHeight) + (cellHeight / 2);
+    //Creates a black outline around cells:
+    w.placeImageXY(this.sprites.outline(cellWidth, cellHeight), xLoc, yLoc);
+    w.placeImageXY(this.drawCell(idx, cellWidth - 2, cellHeight - 2), xLoc, yLoc);
+    this.placed += 2;
+    if (this.hints != null && !this.board.isRevealed(idx) && !this.board.isFlagged(idx)) {
+      w.placeImageXY(this.sprites.hint(this.hints[idx], cellWidth, cellHeight), xLoc, yLoc);
+      this.placed += 1;
+    }
+  }
+
+
+  //EFFECT: draw the size x size cells whose top left cell is at boardCol
+  //and boardRow as one block in the given column and row of the window,
+  //shaded by how many of its cells are revealed (any revealed mine shows
+  //as a mine); at most 4 x 4 cells of a block are looked at, so zooming
+  //further out does not make a frame cost more
+  void placeBlock(WorldScene w, int boardCol, int boardRow, int size, int col, int row,
+      int cellWidth, int cellHeight) {
+    int step = Math.max(1, size / 4);
+    int seen = 0;
+    int open = 0;
+    boolean mine = false;
+    int lastCol = Math.min(boardCol + size, this.board.numCols);
+    int lastRow = Math.min(boardRow + size, this.board.numRows);
+    for (int c = boardCol; c < lastCol; c += step) {
+      for (int r = boardRow; r < lastRow; r += step) {
+        int idx = this.board.index(c, r);
+        seen += 1;
+        if (this.board.isRevealed(idx)) {
+          open += 1;
+          mine = mine || this.board.isMine(idx);
+        }
+      }
+    }
+    int pixelsWide = size * cellWidth;
+    int pixelsHigh = size * cellHeight;
+    w.placeImageXY(this.sprites.block(mine, open, seen, pixelsWide, pixelsHigh),
+        (col * cellWidth) + (pixelsWide / 2), (row * cellHeight) + (pixelsHigh / 2));
+    this.placed += 1;
+  }
+
+
+  //draw the cell at the given index, reading its adjacency
+  //count from the board instead of walking its neighbours
+  public WorldImage drawCell(int idx, int width, int height) {
+    return this.sprites.cell(this.board.isRevealed(idx), this.board.isFlagged(idx),
+        this.board.isMine(idx), this.board.adjacent(idx), width, height);
+  }
+}
+
+
+
+
+//hands out the images cells are drawn with, building each one only
+//once per cell size and sharing it between all cells and frames;
+//images for the most recent cell size are found without allocating,
+//and at most capacity cell sizes are kept (least recently used go first)
+class SpriteCache {
+
+  static final SpriteCache SHARED = new SpriteCache(16);
+
+  //slots 0 to 8 are the revealed cells with that many adjacent mines
+  static final int HIDDEN = 9;
+  static final int FLAGGED = 10;
+  static final int MINE = 11;
+  static final int OUTLINE = 12;
+  //blocks of cells in a zoomed out view: BLOCK_SHADES shades from all
+  //hidden to all revealed, then a block showing a revealed mine
+  static final int BLOCK = 13;
+  static final int BLOCK_SHADES = 5;
+  static final int BLOCK_MINE = BLOCK + BLOCK_SHADES;
+  //marks of the chance of a hidden cell being a mine: HINT_SHADES
+  //shades from green (safe) to red (a mine)
+  static final int HINT = BLOCK_MINE + 1;
+  static final int HINT_SHADES = 5;
+  static final int SLOTS = HINT + HINT_SHADES;
+
+  int capacity;
+  LinkedHashMap<Long, WorldImage[]> bySize;
+  long lastSize;
+  WorldImage[] lastSprites;
+  //number of images built so far
+  int built;
+
+
+  //constructor of SpriteCache keeping the images of at most capacity cell sizes
+  SpriteCache(int capacity) {
+    this.capacity = capacity;
+    this.bySize = new LinkedHashMap<Long, WorldImage[]>(capacity * 2, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Long, WorldImage[]> eldest) {
+        return this.size() > SpriteCache.this.capacity;
+      }
+    };
+    this.lastSize = -1;
+  }
+
+
+  //the image of a cell with the given properties and size
+  public WorldImage cell(boolean isClicked, boolean isFlagged, boolean isMine, 
+      int numMines, int cellWidth, int cellHeight) {
+    //check for not clicked
+    if (!isClicked && isFlagged) {
+      return this.sprite(FLAGGED, cellWidth, cellHeight);
+    }
+    if (!isClicked) {
+      return this.sprite(HIDDEN, cellWidth, cellHeight);
+    }
+    else if (!isMine) {
+      return this.sprite(numMines, cellWidth, cellHeight);
+    }
+    else {
+      return this.sprite(MINE, cellWidth, cellHeight);
+    }
+  }
+
+
+  //the black outline drawn behind a cell of the given size
+  public WorldImage outline(int cellWidth, int cellHeight) {
+    return this.sprite(OUTLINE, cellWidth, cellHeight);
+  }
+
+
+  //the image of a block of cells of the given size, of which seen
+  //cells were looked at and open of those were revealed
+  public WorldImage block(boolean mine, int open, int seen, int width, int height) {
+    if (mine) {
+      return this.sprite(BLOCK_MINE, width, height);
     }
+    return this.sprite(BLOCK + open * (BLOCK_SHADES - 1) / seen, width, height);
+  }
+
+
+  //the mark drawn over a hidden cell of the given size that is a mine
+  //with the given chance
+  public WorldImage hint(double chance, int cellWidth, int cellHeight) {
+    return this.sprite(HINT + (int) Math.round(chance * (HINT_SHADES - 1)), cellWidth,
+        cellHeight);
   }
 
 
+  //the image in the given slot for the given size, built on first use
+  WorldImage sprite(int slot, int cellWidth, int cellHeight) {
+    long size = ((long) cellWidth << 32) | (cellHeight & 0xFFFFFFFFL);
+    if (size != this.lastSize) {
+      WorldImage[] sprites = this.bySize.get(size);
+      if (sprites == null) {
+        sprites = new WorldImage[SLOTS];
+        this.bySize.put(size, sprites);
+      }
+      this.lastSize = size;
+      this.lastSprites = sprites;
+    }
+    WorldImage image = this.lastSprites[slot];
+    if (image == null) {
+      image = this.build(slot, cellWidth, cellHeight);
+      this.lastSprites[slot] = image;
+      this.built += 1;
+    }
+    return image;
+  }
 
+
+  //build the image for the given slot and size
+  WorldImage build(int slot, int cellWidth, int cellHeight) {
+    WorldImage unFlipped = new RectangleImage(cellWidth, cellHeight, OutlineMode.SOLID, 
+        Color.GRAY);
+    if (slot == OUTLINE) {
+      return new RectangleImage(cellWidth, cellHeight, "solid", Color.BLACK);
+    }
+    if (slot == HIDDEN) {
+      return unFlipped;
+    }
+    if (slot >= HINT) {
+      int red = 255 * (slot - HINT) / (HINT_SHADES - 1);
+      return new RectangleImage(Math.max(1, cellWidth / 3), Math.max(1, cellHeight / 3),
+          OutlineMode.SOLID, new Color(red, 255 - red, 0));
+    }
+    if (slot == BLOCK_MINE) {
+      return new RectangleImage(cellWidth, cellHeight, OutlineMode.SOLID, Color.ORANGE);
+    }
+    if (slot >= BLOCK) {
+      //from gray (all hidden) to dark gray (all revealed)
+      int shade = 128 - (slot - BLOCK) * 64 / (BLOCK_SHADES - 1);
+      return new RectangleImage(cellWidth, cellHeight, OutlineMode.SOLID,
+          new Color(shade, shade, shade));
+    }
+    if (slot == FLAGGED) {
+      return new OverlayImage(new EquilateralTriangleImage(cellWidth / 2, OutlineMode.SOLID,
+          Color.GREEN), unFlipped);
+    }
+    if (slot == MINE) {
+      return new OverlayImage(new CircleImage(cellWidth / 2, OutlineMode.SOLID, Color.ORANGE),
+          unFlipped);
+    }
+    WorldImage flipped = new RectangleImage(cellWidth, cellHeight, OutlineMode.SOLID, 
+        Color.darkGray);
+    if (slot == 0) {
+      return flipped;
+    }
+    String valueOfMine = Integer.toString(slot);
+    if (slot <= 2) {
+      return new OverlayImage(new TextImage(valueOfMine, cellWidth / 2, 
+          FontStyle.BOLD, Color.CYAN), flipped);
+    }
+    else {
+      return new OverlayImage(new TextImage(valueOfMine, cellWidth / 2, 
+          FontStyle.BOLD, Color.RED), flipped);
+    }
+  }
 }
 
 
@@ -294,57 +924,32 @@ class Cell {
 
 
   //draw the single cell based on click/flag/flat cell/mine property
+  //using the stored number of neighbouring mines, the images are
+  //shared with every other cell that looks the same
   public WorldImage draw(int cellWidth, int cellHeight) {
-    WorldImage flag = new EquilateralTriangleImage(cellWidth / 2, OutlineMode.SOLID,
-        Color.GREEN);
-    WorldImage mine = new CircleImage(cellWidth / 2, OutlineMode.SOLID, Color.ORANGE);
-    WorldImage unFlipped = new RectangleImage(cellWidth, cellHeight, OutlineMode.SOLID, 
-        Color.GRAY);
-    WorldImage flipped = new RectangleImage(cellWidth, cellHeight, OutlineMode.SOLID, 
-        Color.darkGray);
-
-    //check for not clicked
-    if (!this.isClicked && this.isFlagged) {
-      return new OverlayImage(flag, unFlipped);
-    }
-    if (!this.isClicked) {
-      return unFlipped;
-    }
-    else if (!this.isMine) {
-      String valueOfMine = Integer.toString(this.numNeighborMines());
-      if (this.numNeighborMines() == 0) {
-        return flipped;
-      } 
-      if (this.numNeighborMines() <= 2) {
-        return new OverlayImage(new TextImage(valueOfMine, cellWidth / 2, 
-            FontStyle.BOLD, Color.CYAN), flipped);
-      }
-      else {
-        return new OverlayImage(new TextImage(valueOfMine, cellWidth / 2, 
-            FontStyle.BOLD, Color.RED), flipped);
-      } 
-    }
-    else {
-      return new OverlayImage(mine, unFlipped);
-    }   
+    return SpriteCache.SHARED.cell(this.isClicked, this.isFlagged, this.isMine, 
+        this.numMines, cellWidth, cellHeight);
   }
 
 
 
-  //EFFECT: recursively traverse and reveal 
-  //neighboring cells in a Minesweeper grid
-  //until have adjacent mines beside
+  //EFFECT: traverse and reveal neighboring cells
+  //in a Minesweeper grid until have adjacent mines beside,
+  //using a worklist instead of recursion
   public void floodFill() {
-    if (this.numNeighborMines() > 0) {
-      this.isClicked = true;
-    }
-    else { 
-      this.isClicked = true;
-      for (int i = 0; i < this.neighbours.size(); i += 1) {
-        Cell currentNeigh = this.neighbours.get(i);
-        if (!currentNeigh.isClicked && !currentNeigh.isMine 
-            && !currentNeigh.isFlagged) { 
-          currentNeigh.floodFill();
+    ArrayList<Cell> pending = new ArrayList<Cell>();
+    this.isClicked = true;
+    pending.add(this);
+    while (!pending.isEmpty()) {
+      Cell cur = pending.remove(pending.size() - 1);
+      if (cur.numNeighborMines() == 0) {
+        for (int i = 0; i < cur.neighbours.size(); i += 1) {
+          Cell currentNeigh = cur.neighbours.get(i);
+          if (!currentNeigh.isClicked && !currentNeigh.isMine 
+              && !currentNeigh.isFlagged) { 
+            currentNeigh.isClicked = true;
+            pending.add(currentNeigh);
+          }
         }
       }
     }
@@ -529,8 +1134,9 @@ class ExamplesMineSweeper {
 
 
     this.ws1 = new WorldScene(50, 50);
-    this.ws2 = new WorldScene(50, 25);
-    this.ws3 = new WorldScene(25, 50);
+    //a game of 2 rows and 1 column is 25 wide and 50 high
+    this.ws2 = new WorldScene(25, 50);
+    this.ws3 = new WorldScene(50, 25);
 
     this.rows1Test1 = new ArrayList<Cell>();
     this.rows2Test1 = new ArrayList<Cell>();
@@ -703,19 +1309,19 @@ class ExamplesMineSweeper {
     //here I use the game's cells each
     //cell to visualize and check the validity of
     //the method
-    t.checkExpect(g4.cells.get(0).get(0).isMine, false);
-    t.checkExpect(g4.cells.get(0).get(1).isMine, true);
-    t.checkExpect(g4.cells.get(1).get(0).isMine, true);
-    t.checkExpect(g4.cells.get(1).get(1).isMine, false);
+    t.checkExpect(g4.cellAt(0, 0).isMine, false);
+    t.checkExpect(g4.cellAt(0, 1).isMine, true);
+    t.checkExpect(g4.cellAt(1, 0).isMine, true);
+    t.checkExpect(g4.cellAt(1, 1).isMine, false);
 
-    t.checkExpect(g5.cells.get(0).get(0).isMine, false);
-    t.checkExpect(g5.cells.get(0).get(1).isMine, true);
+    t.checkExpect(g5.cellAt(0, 0).isMine, false);
+    t.checkExpect(g5.cellAt(0, 1).isMine, true);
 
-    t.checkExpect(g5.cells.get(0).get(0).isMine, false);
-    t.checkExpect(g5.cells.get(0).get(1).isMine, true);
+    t.checkExpect(g5.cellAt(0, 0).isMine, false);
+    t.checkExpect(g5.cellAt(0, 1).isMine, true);
 
-    t.checkExpect(g6.cells.get(0).get(0).isMine, false);
-    t.checkExpect(g6.cells.get(1).get(0).isMine, false);
+    t.checkExpect(g6.cellAt(0, 0).isMine, false);
+    t.checkExpect(g6.cellAt(1, 0).isMine, false);
   }
 
 
@@ -860,15 +1466,20 @@ class ExamplesMineSweeper {
   void testOnMouseClicked(Tester t) {
     this.initConditions();
     g1.onMouseClicked(new Posn(12, 12), "LeftButton");
-    t.checkExpect(g1.cells.get(0).get(0).isClicked, true); 
+    t.checkExpect(g1.cellAt(0, 0).isClicked, true); 
+    //g1 has no mines, so the first click floods every unflagged cell
+    t.checkExpect(g1.cellAt(1, 0).isClicked, true); 
+    t.checkExpect(g1.cellAt(1, 1).isClicked, false); 
     g1.onMouseClicked(new Posn(12, 37), "LeftButton");
-    t.checkExpect(g1.cells.get(1).get(0).isClicked, false); 
-    t.checkExpect(g1.cells.get(0).get(0).isClicked, true); 
-    t.checkExpect(g1.cells.get(0).get(1).isClicked, true); 
+    t.checkExpect(g1.cellAt(0, 0).isClicked, true); 
+    t.checkExpect(g1.cellAt(0, 1).isClicked, true); 
     g1.onMouseClicked(new Posn(37, 37), "RightButton");
-    t.checkExpect(g1.cells.get(1).get(1).isFlagged, false); 
+    t.checkExpect(g1.cellAt(1, 1).isFlagged, false); 
+    g1.onMouseClicked(new Posn(37, 37), "RightButton");
+    t.checkExpect(g1.cellAt(1, 1).isFlagged, true); 
+    //revealed cells cannot be flagged
     g1.onMouseClicked(new Posn(37, 12), "RightButton");
-    t.checkExpect(g1.cells.get(1).get(0).isFlagged, true); 
+    t.checkExpect(g1.cellAt(1, 0).isFlagged, false); 
     g1.onMouseClicked(new Posn(12, 12), "LeftButton");
     g1.onMouseClicked(new Posn(37, 12), "LeftButton");
   }
@@ -884,19 +1495,60 @@ class ExamplesMineSweeper {
     //the makescene method has already been tested
     //and thus will not be retested here
     TextImage lostMessage = new TextImage("U BETTER TRY AGAIN", 20, FontStyle.BOLD, Color.RED);
-    WorldScene expected = g2.makeScene();
+    WorldScene lost = g2.makeLostScene();
+    //the mines are revealed, and the view is drawn once with them
     for (int i = 0; i < 1; i++) {
       for (int j = 0; j < 2; j++) {
-        Cell curCell = g2.cells.get(i).get(j);
-        if (curCell.revealFinal() == 1) {
-          expected.placeImageXY(curCell.draw(25, 25), 
-                                  i * 25 + (25 / 2), 
-                                  j * 25 + (25 / 2));
-        }
+        Cell curCell = g2.cellAt(i, j);
+        t.checkExpect(curCell.isClicked || !curCell.isMine, true);
       }
     }
+    WorldScene expected = g2.renderer.viewScene(g2.camera, 25, 25);
     expected.placeImageXY(lostMessage, (25 * 1 / 2), (25 * 2 / 2));
-    t.checkExpect(g2.makeLostScene(), expected);
+    t.checkExpect(lost, expected);
+
+    //on a board bigger than the window only the mines in view are revealed
+    Game big = new Game(200, 300, 6000, new Random(4), new UniformPlacer());
+    big.viewport(250, 125);
+    big.camera.scroll(40, 20);
+    big.makeLostScene();
+    boolean inView = true;
+    boolean outside = true;
+    for (int i = 0; i < 300; i++) {
+      for (int j = 0; j < 200; j++) {
+        int idx = big.board.index(i, j);
+        boolean seen = i >= 40 && i < 50 && j >= 20 && j < 25;
+        if (big.board.isMine(idx)) {
+          inView = inView && (big.board.isRevealed(idx) == seen);
+          outside = outside && (seen || !big.board.isRevealed(idx));
+        }
+      }
+    }
+    t.checkExpect(inView, true);
+    t.checkExpect(outside, true);
+    //zoomed out, the whole blocks in view are revealed
+    big.camera.zoomOut();
+    big.camera.zoomOut();
+    big.camera.zoomOut();
+    int block = big.camera.blockSize(25, 25);
+    big.makeLostScene();
+    int farCol = Math.min(300, 40 + (big.camera.visibleCols(25) + block - 1) / block * block);
+    int farRow = Math.min(200, 20 + (big.camera.visibleRows(25) + block - 1) / block * block);
+    int minesInBlocks = 0;
+    int revealedInBlocks = 0;
+    for (int i = 40; i < farCol; i++) {
+      for (int j = 20; j < farRow; j++) {
+        int idx = big.board.index(i, j);
+        if (big.board.isMine(idx)) {
+          minesInBlocks += 1;
+          if (big.board.isRevealed(idx)) {
+            revealedInBlocks += 1;
+          }
+        }
+      }
+    }
+    t.checkExpect(minesInBlocks > 100, true);
+    t.checkExpect(revealedInBlocks, minesInBlocks);
   }
   
 
@@ -915,14 +1567,1496 @@ class ExamplesMineSweeper {
   void testLinkNeighbours(Tester t) {
     this.initConditions(); 
     g1.linkNeighbours(); 
-    Cell g1Cell1 = g1.cells.get(0).get(0); 
-    t.checkExpect(g1Cell1.neighbours.size(), 6); 
+    Cell g1Cell1 = g1.cellAt(0, 0); 
+    t.checkExpect(g1Cell1.neighbours.size(), 3); 
+    //linking again must not add duplicate neighbours
+    g1.linkNeighbours(); 
+    t.checkExpect(g1.cellAt(0, 0).neighbours.size(), 3); 
+    t.checkExpect(g1.cellAt(1, 1).neighbours.size(), 3); 
     g2.linkNeighbours();
-    Cell g2Cell1 = g2.cells.get(0).get(0); 
-    t.checkExpect(g2Cell1.neighbours.size(), 8); 
+    Cell g2Cell1 = g2.cellAt(0, 0); 
+    t.checkExpect(g2Cell1.neighbours.size(), 1); 
     g3.linkNeighbours(); 
-    Cell g3Cell1 = g3.cells.get(0).get(0); 
-    t.checkExpect(g3Cell1.neighbours.size(), 10); 
+    Cell g3Cell1 = g3.cellAt(0, 0); 
+    t.checkExpect(g3Cell1.neighbours.size(), 1); 
+  }
+
+
+
+  //test the index arithmetic of the Board class
+  void testBoardIndex(Tester t) {
+    Board b = new Board(3, 4);
+    t.checkExpect(b.size(), 12);
+    t.checkExpect(b.index(2, 1), 7);
+    t.checkExpect(b.colOf(7), 2);
+    t.checkExpect(b.rowOf(7), 1);
+    t.checkExpect(b.inBounds(3, 2), true);
+    t.checkExpect(b.inBounds(4, 0), false);
+    t.checkExpect(b.inBounds(0, -1), false);
+  }
+
+
+  //test the neighbours and recount methods of the Board class
+  void testBoardNeighbours(Tester t) {
+    Board b = new Board(3, 3);
+    int[] around = new int[8];
+    t.checkExpect(b.neighbours(b.index(0, 0), around), 3);
+    t.checkExpect(b.neighbours(b.index(1, 1), around), 8);
+    t.checkExpect(b.neighbours(b.index(2, 1), around), 5);
+    b.setMine(b.index(0, 0));
+    b.setMine(b.index(2, 2));
+    b.recount();
+    t.checkExpect(b.adjacent(b.index(1, 1)), 2);
+    t.checkExpect(b.adjacent(b.index(1, 0)), 1);
+    t.checkExpect(b.adjacent(b.index(2, 0)), 0);
+    t.checkExpect(b.isMine(b.index(2, 2)), true);
+    t.checkExpect(b.cellsRemain(), 7);
+    b.reveal(b.index(2, 0));
+    t.checkExpect(b.cellsRemain(), 6);
+    t.checkExpect(b.mineRevealed(), false);
+    b.reveal(b.index(0, 0));
+    t.checkExpect(b.mineRevealed(), true);
+  }
+
+
+
+  //test the FloodFill reveal engine on a Board
+  void testFloodFillReveal(Tester t) {
+    //column 2 is a wall of mines on a 3 x 4 board
+    Board b = new Board(3, 4);
+    b.setMine(b.index(2, 0));
+    b.setMine(b.index(2, 1));
+    b.setMine(b.index(2, 2));
+    b.setFlagged(b.index(0, 2), true);
+    b.recount();
+    FloodFill fill = new FloodFill(b);
+    t.checkExpect(fill.reveal(b.index(0, 0)), 5);
+    t.checkExpect(b.isRevealed(b.index(1, 2)), true);
+    t.checkExpect(b.isRevealed(b.index(0, 2)), false);
+    t.checkExpect(b.isRevealed(b.index(2, 0)), false);
+    t.checkExpect(b.isRevealed(b.index(3, 0)), false);
+    t.checkExpect(fill.reveal(b.index(0, 0)), 0);
+    t.checkExpect(fill.reveal(b.index(3, 1)), 1);
+
+    //a single click on a large empty board must not overflow the stack
+    Board big = new Board(1000, 1000);
+    t.checkExpect(new FloodFill(big).reveal(big.index(500, 500)), 1000000);
+    t.checkExpect(big.cellsRemain(), 0);
+  }
+
+
+
+  //count the mines of the given board (only for testing)
+  int countMines(Board b) {
+    int mines = 0;
+    for (int i = 0; i < b.size(); i += 1) {
+      if (b.isMine(i)) {
+        mines += 1;
+      }
+    }
+    return mines;
+  }
+
+
+  //test the place method of LegacyPlacer and UniformPlacer
+  void testMinePlacers(Tester t) {
+    Board legacy = new Board(2, 2);
+    new LegacyPlacer().place(legacy, 2, new Random(2));
+    t.checkExpect(legacy.isMine(legacy.index(0, 1)), true);
+    t.checkExpect(legacy.isMine(legacy.index(1, 0)), true);
+    t.checkExpect(this.countMines(legacy), 2);
+
+    Board sparse = new Board(40, 50);
+    new UniformPlacer().place(sparse, 300, new Random(7));
+    t.checkExpect(this.countMines(sparse), 300);
+    Board again = new Board(40, 50);
+    new UniformPlacer().place(again, 300, new Random(7));
+    t.checkExpect(again.state, sparse.state);
+
+    Board dense = new Board(40, 50);
+    new UniformPlacer().place(dense, 1990, new Random(7));
+    t.checkExpect(this.countMines(dense), 1990);
+    Board full = new Board(3, 3);
+    new UniformPlacer().place(full, 9, new Random(7));
+    t.checkExpect(this.countMines(full), 9);
+
+    t.checkException(new IllegalArgumentException("Cannot place 5 mines on 4 cells"),
+        new LegacyPlacer(), "place", new Board(2, 2), 5, new Random());
+  }
+
+
+
+  //count the mines around a cell by looking at its neighbours
+  //(only for testing the packed counts)
+  int slowCount(Board b, int idx) {
+    int[] around = new int[8];
+    int n = b.neighbours(idx, around);
+    int mines = 0;
+    for (int k = 0; k < n; k += 1) {
+      if (b.isMine(around[k])) {
+        mines += 1;
+      }
+    }
+    return mines;
+  }
+
+
+  //check that every stored adjacency count of the board is right
+  boolean countsMatch(Board b) {
+    for (int i = 0; i < b.size(); i += 1) {
+      if (b.adjacent(i) != this.slowCount(b, i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  //test the recount, addMine, clearMine and moveMine methods of Board
+  void testBoardCounts(Tester t) {
+    Board b = new Board(17, 23);
+    new UniformPlacer().place(b, 120, new Random(5));
+    b.recount();
+    t.checkExpect(this.countsMatch(b), true);
+
+    Board thin = new Board(1, 6);
+    new UniformPlacer().place(thin, 3, new Random(5));
+    thin.recount();
+    t.checkExpect(this.countsMatch(thin), true);
+
+    Board c = new Board(3, 3);
+    c.addMine(c.index(0, 0));
+    c.addMine(c.index(0, 0));
+    t.checkExpect(c.adjacent(c.index(1, 1)), 1);
+    c.moveMine(c.index(0, 0), c.index(2, 2));
+    t.checkExpect(c.adjacent(c.index(0, 1)), 0);
+    t.checkExpect(c.adjacent(c.index(2, 1)), 1);
+    t.checkExpect(c.isMine(c.index(0, 0)), false);
+    t.checkExpect(this.countsMatch(c), true);
+    c.clearMine(c.index(2, 2));
+    t.checkExpect(c.adjacent(c.index(1, 1)), 0);
+
+    b.moveMine(this.firstMine(b), this.firstSafe(b));
+    t.checkExpect(this.countsMatch(b), true);
+  }
+
+
+
+  //test the neighbours of the grid, torus and hex topologies
+  void testTopologies(Tester t) {
+    int[] around = new int[8];
+    ITopology grid = new GridTopology(4, 5);
+    t.checkExpect(grid.neighbours(5, around), 8);
+    t.checkExpect(around, new int[] { 0, 1, 2, 4, 6, 8, 9, 10 });
+    t.checkExpect(grid.neighbours(0, around), 3);
+    t.checkExpect(grid.neighbours(19, around), 3);
+
+    ITopology torus = new TorusTopology(4, 5);
+    t.checkExpect(torus.neighbours(0, around), 8);
+    t.checkExpect(around, new int[] { 19, 16, 17, 3, 1, 7, 4, 5 });
+    t.checkExpect(new TorusTopology(2, 2).neighbours(0, around), 3);
+    t.checkExpect(new TorusTopology(1, 1).neighbours(0, around), 0);
+
+    ITopology hex = new HexTopology(4, 5);
+    t.checkExpect(hex.maxDegree(), 6);
+    //an even column touches the rows above in the next column
+    t.checkExpect(hex.neighbours(9, around), 6);
+    t.checkExpect(new int[] { around[0], around[1], around[2], around[3], around[4], around[5] },
+        new int[] { 8, 10, 4, 5, 12, 13 });
+    //an odd column touches the rows below
+    t.checkExpect(hex.neighbours(5, around), 6);
+    t.checkExpect(new int[] { around[0], around[1], around[2], around[3], around[4], around[5] },
+        new int[] { 4, 6, 1, 2, 9, 10 });
+    t.checkExpect(hex.neighbours(0, around), 2);
+  }
+
+
+  //test that recount agrees with the neighbours of each topology
+  void testTopologyCounts(Tester t) {
+    Board torus = new Board(new TorusTopology(9, 7));
+    new UniformPlacer().place(torus, 20, new Random(3));
+    torus.recount();
+    t.checkExpect(this.countsMatch(torus), true);
+
+    Board hex = new Board(new HexTopology(9, 7));
+    new UniformPlacer().place(hex, 20, new Random(3));
+    hex.recount();
+    t.checkExpect(this.countsMatch(hex), true);
+    hex.moveMine(this.firstMine(hex), this.firstSafe(hex));
+    t.checkExpect(this.countsMatch(hex), true);
+  }
+
+
+  //the index of the first mine of the board (only for testing)
+  int firstMine(Board b) {
+    int idx = 0;
+    while (!b.isMine(idx)) {
+      idx += 1;
+    }
+    return idx;
+  }
+
+
+  //the index of the first safe cell of the board (only for testing)
+  int firstSafe(Board b) {
+    int idx = 0;
+    while (b.isMine(idx)) {
+      idx += 1;
+    }
+    return idx;
+  }
+
+
+  //the index of the first safe cell of the board not revealed yet
+  //(only for testing)
+  int firstHidden(Board b) {
+    int idx = 0;
+    while (b.isMine(idx) || b.isRevealed(idx)) {
+      idx += 1;
+    }
+    return idx;
+  }
+
+
+
+  //test that the running totals of Board follow every change
+  void testBoardTotals(Tester t) {
+    this.initConditions();
+    Board b = g4.board;
+    b.debug = true;
+    t.checkExpect(b.cellsRemain(), 2);
+    g4.onMouseClicked(new Posn(12, 12), "LeftButton");
+    t.checkExpect(b.cellsRemain(), 1);
+    t.checkExpect(g4.win(), false);
+    g4.onMouseClicked(new Posn(37, 12), "RightButton");
+    t.checkExpect(b.flagsPlaced(), 1);
+    g4.onMouseClicked(new Posn(37, 12), "RightButton");
+    t.checkExpect(b.flagsPlaced(), 0);
+    g4.onMouseClicked(new Posn(37, 37), "LeftButton");
+    t.checkExpect(g4.win(), true);
+    t.checkExpect(g4.lost(), false);
+    g4.onMouseClicked(new Posn(37, 12), "LeftButton");
+    t.checkExpect(g4.lost(), true);
+    b.clearMine(b.index(1, 0));
+    t.checkExpect(b.cellsRemain(), 0);
+    t.checkExpect(g4.lost(), false);
+
+    //a cell changed behind the board's back is caught in debug mode
+    b.state[b.index(0, 1)] |= Board.REVEALED;
+    t.checkException(new IllegalStateException("Board totals out of date: counted 0/0/0"
+        + " but found 0/1/0"), b, "cellsRemain");
+  }
+
+
+
+  //test that BoardRenderer only draws the changed cells again
+  void testIncrementalRender(Tester t) {
+    this.initConditions();
+    WorldScene first = g1.makeScene();
+    t.checkExpect(g1.renderer.overdrawn, 0);
+    //(0, 0) is already revealed, the click reveals its two safe neighbours
+    g1.onMouseClicked(new Posn(12, 12), "LeftButton");
+    t.checkExpect(g1.board.changed.size, 2);
+    WorldScene second = g1.makeScene();
+    t.checkExpect(second == first, true);
+    t.checkExpect(g1.renderer.overdrawn, 2);
+    t.checkExpect(g1.board.changed.isEmpty(), true);
+    //nothing changed, so nothing is drawn
+    g1.makeScene();
+    t.checkExpect(g1.renderer.overdrawn, 2);
+    //a new cell size redraws the whole board
+    g1.cellWidth = 30;
+    t.checkExpect(g1.makeScene() == first, false);
+    t.checkExpect(g1.renderer.overdrawn, 0);
+    g1.renderer.invalidate();
+    t.checkExpect(g1.makeScene(), g1.renderer.fullScene(30, 25));
+  }
+
+
+
+  //test that SpriteCache shares its images and stays bounded
+  void testSpriteCache(Tester t) {
+    this.initConditions();
+    SpriteCache cache = new SpriteCache(2);
+    t.checkExpect(cache.cell(false, false, true, 0, 25, 25), unFlipped);
+    t.checkExpect(cache.cell(true, false, false, 3, 25, 25) 
+        == cache.cell(true, false, false, 3, 25, 25), true);
+    t.checkExpect(cache.outline(25, 25), new RectangleImage(25, 25, "solid", Color.BLACK));
+    t.checkExpect(cache.built, 3);
+    //drawing every cell of a board again builds nothing new
+    cache.cell(false, true, false, 0, 23, 23);
+    cache.cell(true, false, false, 0, 23, 23);
+    int builtBefore = cache.built;
+    for (int i = 0; i < 50; i += 1) {
+      cache.cell(false, true, false, 0, 23, 23);
+      cache.cell(true, false, false, 0, 23, 23);
+    }
+    t.checkExpect(cache.built, builtBefore);
+    //only two cell sizes are kept
+    cache.cell(true, false, true, 0, 10, 10);
+    t.checkExpect(cache.bySize.size(), 2);
+    t.checkExpect(cache.cell(true, false, false, 3, 25, 25),
+        new OverlayImage(new TextImage("3", 25 / 2, FontStyle.BOLD, Color.RED), flipped));
+  }
+
+
+
+  //test the moves and queries of MineSweeperEngine
+  void testEngine(Tester t) {
+    //mines at (0, 1) and (1, 0) of a 2 x 2 board
+    MineSweeperEngine e = new MineSweeperEngine(2, 2, 2, new Random(2), new LegacyPlacer());
+    t.checkExpect(e.isMine(0, 1), true);
+    t.checkExpect(e.adjacent(0, 0), 2);
+    t.checkExpect(e.reveal(0, 0), 1);
+    t.checkExpect(e.isRevealed(0, 0), true);
+    t.checkExpect(e.reveal(0, 0), 0);
+    e.toggleFlag(1, 0);
+    t.checkExpect(e.isFlagged(1, 0), true);
+    t.checkExpect(e.flagsPlaced(), 1);
+    t.checkExpect(e.reveal(1, 0), 0);
+    //only one of the two mines is flagged
+    t.checkExpect(e.chord(0, 0), 0);
+    e.toggleFlag(0, 1);
+    t.checkExpect(e.chord(0, 0), 1);
+    t.checkExpect(e.won(), true);
+    t.checkExpect(e.isOver(), true);
+
+    //chording with a wrong flag reveals the mine
+    MineSweeperEngine e2 = new MineSweeperEngine(2, 2, 2, new Random(2), new LegacyPlacer());
+    e2.reveal(0, 0);
+    e2.toggleFlag(1, 0);
+    e2.toggleFlag(1, 1);
+    t.checkExpect(e2.lost(), false);
+    t.checkExpect(e2.chord(0, 0), 1);
+    t.checkExpect(e2.isRevealed(0, 1), true);
+    t.checkExpect(e2.lost(), true);
+
+    t.checkException(new IndexOutOfBoundsException("No cell at (2, 0)"), e, "reveal", 2, 0);
+
+    //an engine built from a seed places more mines among its free cells,
+    //the same ones for the same seed
+    MineSweeperEngine seeded = new MineSweeperEngine(10, 10, 10, 5L,
+        new ParallelBoardGenerator());
+    seeded.placeMines(5);
+    t.checkExpect(seeded.numMines, 15);
+    t.checkExpect(MineSweeperEngine.minesOn(seeded.board), 15);
+    t.checkExpect(this.countsMatch(seeded.board), true);
+    t.checkExpect(seeded.cellsRemain(), 85);
+    MineSweeperEngine same = new MineSweeperEngine(10, 10, 10, 5L,
+        new ParallelBoardGenerator());
+    same.placeMines(5);
+    t.checkExpect(Arrays.equals(same.board.state, seeded.board.state), true);
+    t.checkException(new IllegalArgumentException("Cannot place 86 more mines on 85 free cells"),
+        seeded, "placeMines", 86);
+    //and so does one playing on a board that was set up by hand
+    MineSweeperEngine given = new MineSweeperEngine(new Board(2, 2));
+    given.placeMines(3);
+    t.checkExpect(MineSweeperEngine.minesOn(given.board), 3);
+    t.checkExpect(given.cellsRemain(), 1);
+    //as does a game over a seeded engine
+    Game g = new Game(10, 10, 10, 5L);
+    g.placeMines(10, 10, 5);
+    t.checkExpect(Arrays.equals(g.board.state, seeded.board.state), true);
+    //mines added by an engine placing with a UniformPlacer are all counted,
+    //sparse or dense
+    int miscounted = 0;
+    for (int seed = 0; seed < 100; seed += 1) {
+      MineSweeperEngine uniform = new MineSweeperEngine(10, 10, 10, new Random(seed),
+          new UniformPlacer());
+      uniform.placeMines(5);
+      if (uniform.numMines != 15 || MineSweeperEngine.minesOn(uniform.board) != 15) {
+        miscounted += 1;
+      }
+    }
+    t.checkExpect(miscounted, 0);
+    MineSweeperEngine dense = new MineSweeperEngine(10, 10, 10, new Random(3),
+        new UniformPlacer());
+    dense.placeMines(60);
+    t.checkExpect(dense.numMines, 70);
+    t.checkExpect(MineSweeperEngine.minesOn(dense.board), 70);
+    t.checkExpect(dense.cellsRemain(), 30);
+    t.checkExpect(this.countsMatch(dense.board), true);
+    //a placer that leaves out mines is caught instead of trusted
+    MineSweeperEngine lazy = new MineSweeperEngine(new Board(3, 3));
+    lazy.placer = (board, count, rand) -> board.setMine(0);
+    t.checkException(new IllegalStateException("Mine count out of date: expected 2 mines but "
+        + "found 1"), lazy, "placeMines", 2);
+  }
+
+
+
+  //test that ParallelBoardGenerator builds the same correct board
+  //from a seed whatever the number of threads
+  void testParallelGenerator(Tester t) {
+    ForkJoinPool one = new ForkJoinPool(1);
+    ForkJoinPool four = new ForkJoinPool(4);
+    Board a = new ParallelBoardGenerator(one).generate(300, 700, 42000, 11);
+    Board b = new ParallelBoardGenerator(four).generate(300, 700, 42000, 11);
+    t.checkExpect(Arrays.equals(a.state, b.state), true);
+    t.checkExpect(this.countMines(a), 42000);
+    t.checkExpect(this.countsMatch(a), true);
+    t.checkExpect(a.cellsRemain(), 300 * 700 - 42000);
+    a.verifyTotals();
+    Board c = new ParallelBoardGenerator(four).generate(300, 700, 42000, 12);
+    t.checkExpect(Arrays.equals(a.state, c.state), false);
+
+    Board dense = new ParallelBoardGenerator(four).generate(100, 100, 9990, 3);
+    t.checkExpect(this.countMines(dense), 9990);
+    t.checkExpect(this.countsMatch(dense), true);
+    one.shutdown();
+    four.shutdown();
+
+    MineSweeperEngine e = new MineSweeperEngine(20, 30, 60, 5, new ParallelBoardGenerator());
+    t.checkExpect(e.numMines, 60);
+    t.checkExpect(e.cellsRemain(), 540);
+  }
+
+
+
+  //test that a reveal finished by ParallelFloodFill opens exactly
+  //the cells the sequential FloodFill opens
+  void testParallelFloodFill(Tester t) {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    double[] densities = { 0.0, 0.02, 0.1, 0.2 };
+    for (double density : densities) {
+      Board seq = new Board(150, 200);
+      new UniformPlacer().place(seq, (int) (30000 * density), new Random(9));
+      for (int i = 0; i < seq.size(); i += 97) {
+        seq.setFlagged(i, !seq.isMine(i));
+      }
+      seq.recount();
+      Board par = new Board(150, 200);
+      par.state = Arrays.copyOf(seq.state, seq.size());
+      par.recount();
+      par.trackChanges();
+      FloodFill seqFill = new FloodFill(seq);
+      FloodFill parFill = new FloodFill(par);
+      parFill.useParallel(new ParallelFloodFill(par, pool), 1);
+      int start = this.firstZero(seq);
+      t.checkExpect(parFill.reveal(start), seqFill.reveal(start));
+      t.checkExpect(Arrays.equals(par.state, seq.state), true);
+      t.checkExpect(par.cellsRemain(), seq.cellsRemain());
+      par.verifyTotals();
+    }
+    pool.shutdown();
+  }
+
+
+  //the index of the first safe cell without adjacent mines (only for testing)
+  int firstZero(Board b) {
+    int idx = 0;
+    while (b.isMine(idx) || b.adjacent(idx) != 0 || b.isFlagged(idx)) {
+      idx += 1;
+    }
+    return idx;
+  }
+
+
+
+  //tests for InfiniteBoard
+  void testInfiniteBoard(Tester t) throws java.io.IOException {
+    java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("chunks");
+    InfiniteBoard inf = new InfiniteBoard(7, 0.15, 2, dir);
+    //counts agree with the mines around each cell, also across chunk borders
+    boolean countsOk = true;
+    for (int x = -66; x < 66; x += 1) {
+      for (int y = -3; y < 3; y += 1) {
+        int mines = 0;
+        for (int dx = -1; dx <= 1; dx += 1) {
+          for (int dy = -1; dy <= 1; dy += 1) {
+            if ((dx != 0 || dy != 0) && inf.isMine(x + dx, y + dy)) {
+              mines += 1;
+            }
+          }
+        }
+        countsOk = countsOk && inf.adjacent(x, y) == mines;
+      }
+    }
+    t.checkExpect(countsOk, true);
+    t.checkExpect(inf.chunks.size() <= 2, true);
+    //the same seed always gives the same mines
+    InfiniteBoard again = new InfiniteBoard(7, 0.15, 2, dir);
+    t.checkExpect(again.isMine(-65, 1), inf.isMine(-65, 1));
+    t.checkExpect(again.adjacent(130, -200), inf.adjacent(130, -200));
+    //changes survive their chunk being dropped and built again
+    int x = 0;
+    while (inf.isMine(x, 0)) {
+      x += 1;
+    }
+    int opened = inf.reveal(x, 0);
+    t.checkExpect(opened > 0, true);
+    t.checkExpect(inf.revealed, opened);
+    inf.toggleFlag(1000, 1000);
+    t.checkExpect(inf.flags, 1);
+    inf.isMine(5000, 5000);
+    inf.isMine(-5000, 5000);
+    t.checkExpect(inf.chunks.containsKey(InfiniteBoard.key(15, 15)), false);
+    t.checkExpect(inf.isFlagged(1000, 1000), true);
+    t.checkExpect(inf.isRevealed(x, 0), true);
+    t.checkExpect(inf.reveal(x, 0), 0);
+    t.checkExpect(inf.lost(), false);
+    t.checkConstructorException(
+        new IllegalArgumentException("Mine density must be between 0 and 1 but was 1.0"),
+        "InfiniteBoard", 7L, 1.0, 2, dir);
+
+    //an opening cut short by revealLimit is resumed from where it stopped,
+    //and ends up the same as one that was never cut short
+    java.nio.file.Path whole = java.nio.file.Files.createTempDirectory("chunks");
+    java.nio.file.Path parts = java.nio.file.Files.createTempDirectory("chunks");
+    InfiniteBoard full = new InfiniteBoard(3, 0.2, 16, whole);
+    InfiniteBoard cut = new InfiniteBoard(3, 0.2, 16, parts);
+    int zero = -1;
+    int all = 0;
+    while (all < 40) {
+      zero += 1;
+      if (!full.isMine(zero, 0) && full.adjacent(zero, 0) == 0) {
+        all = full.reveal(zero, 0);
+      }
+    }
+    cut.revealLimit = 10;
+    int first = cut.reveal(zero, 0);
+    t.checkExpect(first < all, true);
+    t.checkExpect(cut.spreading(), true);
+    int more = first;
+    while (cut.spreading()) {
+      more += cut.resume(10);
+    }
+    t.checkExpect(more, all);
+    t.checkExpect(cut.revealed, all);
+    this.deleteChunks(dir);
+    this.deleteChunks(whole);
+    this.deleteChunks(parts);
+  }
+
+
+  //EFFECT: delete the given directory of chunk files
+  void deleteChunks(java.nio.file.Path dir) throws java.io.IOException {
+    try (java.util.stream.Stream<java.nio.file.Path> files = java.nio.file.Files.list(dir)) {
+      for (java.nio.file.Path f : (Iterable<java.nio.file.Path>) files::iterator) {
+        java.nio.file.Files.delete(f);
+      }
+    }
+    java.nio.file.Files.delete(dir);
+  }
+
+
+  //tests for InfiniteGame, the window onto an InfiniteBoard
+  void testInfiniteGame(Tester t) throws java.io.IOException {
+    java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("chunks");
+    InfiniteBoard inf = new InfiniteBoard(3, 0.2, 16, dir);
+    InfiniteGame g = new InfiniteGame(inf, 8, 6);
+    t.checkExpect(g.left, -4);
+    t.checkExpect(g.top, -3);
+    //a click reveals the cell under it, wherever the window is
+    g.onKeyEvent("left");
+    g.onKeyEvent("up");
+    t.checkExpect(g.left, -8);
+    t.checkExpect(g.top, -7);
+    int x = g.left;
+    while (inf.isMine(x, g.top)) {
+      x += 1;
+    }
+    g.onMouseClicked(new Posn((x - g.left) * 25 + 3, 3), "LeftButton");
+    t.checkExpect(inf.isRevealed(x, g.top), true);
+    g.onMouseClicked(new Posn(8 * 25 + 5, 3), "LeftButton");
+    t.checkExpect(inf.isRevealed(g.left + 8, g.top), false);
+    WorldScene scene = g.makeScene();
+    t.checkExpect(g.worldEnds(), new WorldEnd(false, scene));
+    //ticks finish openings cut short
+    inf.revealLimit = 1;
+    int zero = 100;
+    while (inf.isMine(zero, 0) || inf.adjacent(zero, 0) != 0) {
+      zero += 1;
+    }
+    inf.reveal(zero, 0);
+    t.checkExpect(inf.spreading(), true);
+    for (int i = 0; i < 1000 && inf.spreading(); i += 1) {
+      g.onTick();
+    }
+    t.checkExpect(inf.spreading(), false);
+    //a revealed mine ends the game, and clicks do nothing after it
+    int mine = 0;
+    while (!inf.isMine(g.left + mine, g.top + 1)) {
+      mine += 1;
+      if (mine == 8) {
+        g.onKeyEvent("right");
+        mine = 0;
+      }
+    }
+    g.onMouseClicked(new Posn(mine * 25 + 3, 25 + 3), "LeftButton");
+    t.checkExpect(inf.lost(), true);
+    t.checkExpect(g.worldEnds().worldEnds, true);
+    int revealed = inf.revealed;
+    g.onMouseClicked(new Posn(3, 3), "LeftButton");
+    t.checkExpect(inf.revealed, revealed);
+    this.deleteChunks(dir);
+  }
+
+
+
+  //test that Camera and Game only draw what is in the window
+  void testCamera(Tester t) {
+    Camera c = new Camera(100, 200);
+    t.checkExpect(c.width(25), 5000);
+    t.checkExpect(c.height(25), 2500);
+    c.resize(100, 60);
+    t.checkExpect(c.visibleCols(25), 4);
+    t.checkExpect(c.visibleRows(25), 3);
+    c.scroll(-5, 98);
+    t.checkExpect(c.left, 0);
+    t.checkExpect(c.top, 98);
+    t.checkExpect(c.visibleRows(25), 2);
+    t.checkExpect(c.rowAt(30, 25), 99);
+    c.scroll(500, 500);
+    t.checkExpect(c.left, 199);
+    t.checkExpect(c.top, 99);
+    t.checkExpect(c.blockSize(25, 25), 1);
+    c.zoomOut();
+    c.zoomOut();
+    c.zoomOut();
+    t.checkExpect(c.scale(25), 3);
+    t.checkExpect(c.blockSize(25, 25), 2);
+    for (int i = 0; i < 10; i += 1) {
+      c.zoomIn();
+    }
+    t.checkExpect(c.scale(25), 100);
+
+    //a window onto a big board
+    Game g = new Game(new MineSweeperEngine(new Board(300, 400)));
+    g.viewport(100, 50);
+    WorldScene first = g.makeScene();
+    t.checkExpect(first.width, 100);
+    t.checkExpect(first.height, 50);
+    t.checkExpect(first, g.renderer.viewScene(g.camera, 25, 25));
+    g.onKeyEvent("right");
+    g.onKeyEvent("down");
+    g.onKeyEvent("down");
+    t.checkExpect(g.camera.left, 4);
+    t.checkExpect(g.camera.top, 8);
+    t.checkExpect(g.makeScene() == first, false);
+    //a click lands on the cell under the camera, flags far away are not drawn
+    g.onMouseClicked(new Posn(30, 5), "RightButton");
+    t.checkExpect(g.board.isFlagged(g.board.index(5, 8)), true);
+    g.engine.toggleFlag(399, 299);
+    g.makeScene();
+    t.checkExpect(g.renderer.overdrawn, 1);
+    //zoomed far out, the view is drawn in blocks and stays the window's size
+    for (int i = 0; i < 5; i += 1) {
+      g.onKeyEvent("-");
+    }
+    t.checkExpect(g.camera.blockSize(25, 25), 4);
+    WorldScene blocks = g.makeScene();
+    t.checkExpect(blocks.width, 100);
+    t.checkExpect(blocks, g.renderer.viewScene(g.camera, 25, 25));
+    t.checkExpect(SpriteCache.SHARED.block(false, 2, 4, 4, 4),
+        new RectangleImage(4, 4, OutlineMode.SOLID, new Color(96, 96, 96)));
+  }
+
+
+
+  //test that SaveFile writes a game and reads it back
+  void testSaveFile(Tester t) throws java.io.IOException {
+    java.nio.file.Path file = java.nio.file.Files.createTempFile("game", ".msw");
+    MineSweeperEngine e = new MineSweeperEngine(13, 21, 40, 5L, new ParallelBoardGenerator());
+    e.revealCell(this.firstZero(e.board));
+    e.toggleFlagCell(this.firstMine(e.board));
+    e.revealCell(this.firstMine(e.board) + 1);
+    SaveFile.save(e, file);
+    t.checkExpect(java.nio.file.Files.size(file), SaveFile.fileSize(13 * 21));
+    MineSweeperEngine back = new SaveFile(file).load();
+    t.checkExpect(Arrays.equals(back.board.state, e.board.state), true);
+    t.checkExpect(back.seed, 5L);
+    t.checkExpect(back.numMines, 40);
+    t.checkExpect(back.cellsRemain(), e.cellsRemain());
+    t.checkExpect(back.flagsPlaced(), 1);
+    //opening a file only reads what is asked for
+    SaveFile lazy = new SaveFile(file);
+    t.checkExpect(lazy.board.state[lazy.board.index(8, 3)], (byte) 0);
+    t.checkExpect(lazy.board.cellsRemain(), e.cellsRemain());
+    lazy.loadColumns(7, 10);
+    t.checkExpect(lazy.decoded[5], false);
+    t.checkExpect(lazy.decoded[10], true);
+    t.checkExpect(lazy.counted[10], false);
+    boolean same = true;
+    for (int i = lazy.board.index(7, 0); i < lazy.board.index(10, 0); i += 1) {
+      same = same && lazy.board.state[i] == e.board.state[i];
+    }
+    t.checkExpect(same, true);
+    //other topologies are read at once
+    Board torus = new Board(new TorusTopology(4, 5));
+    torus.setMine(3);
+    torus.recount();
+    SaveFile.save(new MineSweeperEngine(torus), file);
+    SaveFile whole = new SaveFile(file);
+    t.checkExpect(whole.board.topology instanceof TorusTopology, true);
+    t.checkExpect(Arrays.equals(whole.board.state, torus.state), true);
+    //damaged files are refused
+    java.nio.file.Files.write(file, new byte[] { 1, 2, 3 });
+    t.checkConstructorException(
+        new java.io.IOException("Not a MineSweeper save file: " + file), "SaveFile", file);
+  }
+
+
+
+  //test that a seeded Game logs its moves and Replay plays them again
+  void testMoveLog(Tester t) throws java.io.IOException {
+    MoveLog small = new MoveLog(1L, 2, 2, 0);
+    small.append(300, 1, MineSweeperEngine.FLAG, 5);
+    //300 takes two bytes, the rest one each
+    t.checkExpect(small.length, 5);
+    int[] pos = new int[1];
+    t.checkExpect(small.getVarint(pos), 300);
+    t.checkExpect(pos[0], 2);
+
+    Game g = new Game(20, 30, 60, 77L);
+    t.checkExpect(g.log.seed, 77L);
+    Board b = g.board;
+    g.onMouseClicked(new Posn(30 * 25 - 1, 20 * 25 - 1), "RightButton");
+    g.onTick();
+    g.onTick();
+    int zero = this.firstZero(b);
+    g.onCellClicked(zero, "LeftButton");
+    g.onCellClicked(this.firstSafe(b), "LeftButton");
+    g.onCellClicked(zero, "MiddleButton");
+    g.onCellClicked(this.firstMine(b), "RightButton");
+    g.onTick();
+    g.onCellClicked(this.firstMine(b), "RightButton");
+    t.checkExpect(g.log.moves, 6);
+    t.checkExpect(g.log.lastTick, 3);
+
+    //the log survives a trip through a file
+    java.nio.file.Path file = java.nio.file.Files.createTempFile("moves", ".log");
+    g.log.save(file);
+    MoveLog back = MoveLog.load(file);
+    t.checkExpect(back.moves, 6);
+    t.checkExpect(back.lastTick, 3);
+    t.checkExpect(back.seed, 77L);
+
+    //replaying gives the same board, and seeking goes back and forth
+    Replay r = new Replay(back, 2);
+    r.runToEnd();
+    t.checkExpect(Arrays.equals(r.engine.board.state, b.state), true);
+    t.checkExpect(r.engine.cellsRemain(), g.cellsRemain());
+    t.checkExpect(r.tick, 3);
+    t.checkExpect(r.checkpoints.size(), 4);
+    r.seek(1);
+    t.checkExpect(r.engine.flagsPlaced(), 1);
+    t.checkExpect(r.engine.board.isRevealed(zero), false);
+    r.seek(2);
+    t.checkExpect(r.engine.board.isRevealed(zero), true);
+    r.seek(100);
+    t.checkExpect(r.position, 6);
+    t.checkExpect(Arrays.equals(r.engine.board.state, b.state), true);
+
+    //a record cut off at the end of a file is dropped
+    java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+    g.log.writeTo(out);
+    byte[] cut = Arrays.copyOf(out.toByteArray(), out.size() - 1);
+    t.checkExpect(MoveLog.read(new java.io.ByteArrayInputStream(cut)).moves, 5);
+    t.checkException(new IllegalArgumentException("Unknown move 7"), g.engine, "play", 0, 7);
+  }
+
+
+
+  //test that UndoJournal takes moves back and makes them again
+  void testUndoJournal(Tester t) {
+    MineSweeperEngine e = new MineSweeperEngine(40, 50, 100, 3L, new ParallelBoardGenerator());
+    e.keepUndo(1 << 20);
+    Board b = e.board;
+    byte[] start = b.state.clone();
+    int zero = this.firstZero(b);
+    int opened = e.play(zero, MineSweeperEngine.REVEAL);
+    byte[] afterReveal = b.state.clone();
+    int mine = this.firstMine(b);
+    e.play(mine, MineSweeperEngine.FLAG);
+    //a move that changes nothing is not kept
+    e.play(zero, MineSweeperEngine.FLAG);
+    t.checkExpect(e.journal.undos.size(), 2);
+    //the opening is stored as runs of indices, far smaller than a cell list
+    t.checkExpect(e.journal.undos.peekFirst().length < opened, true);
+    t.checkExpect(e.undo(), true);
+    t.checkExpect(Arrays.equals(b.state, afterReveal), true);
+    t.checkExpect(e.flagsPlaced(), 0);
+    t.checkExpect(e.undo(), true);
+    t.checkExpect(Arrays.equals(b.state, start), true);
+    t.checkExpect(e.cellsRemain(), 2000 - 100);
+    t.checkExpect(e.undo(), false);
+    t.checkExpect(e.redo(), true);
+    t.checkExpect(Arrays.equals(b.state, afterReveal), true);
+    t.checkExpect(e.cellsRemain(), 2000 - 100 - opened);
+    //a new move drops what could be redone
+    e.play(mine, MineSweeperEngine.REVEAL);
+    t.checkExpect(e.lost(), true);
+    t.checkExpect(e.redo(), false);
+    t.checkExpect(e.undo(), true);
+    t.checkExpect(e.lost(), false);
+    b.verifyTotals();
+    //the oldest moves go first when the journal is full
+    e.keepUndo(8);
+    e.play(mine, MineSweeperEngine.FLAG);
+    e.play(mine + 1, MineSweeperEngine.FLAG);
+    e.play(mine, MineSweeperEngine.FLAG);
+    t.checkExpect(e.journal.bytes <= 8, true);
+    t.checkExpect(e.journal.undos.size() < 3, true);
+
+    //undo from the keyboard is logged and replayed
+    Game g = new Game(20, 30, 60, 77L);
+    g.onCellClicked(this.firstZero(g.board), "LeftButton");
+    g.onCellClicked(this.firstMine(g.board), "RightButton");
+    g.onKeyEvent("u");
+    g.onKeyEvent("u");
+    g.onKeyEvent("r");
+    g.onKeyEvent("r");
+    g.onKeyEvent("r");
+    t.checkExpect(g.log.moves, 6);
+    t.checkExpect(g.log.undos, 4);
+    Replay r = new Replay(g.log, 3);
+    r.runToEnd();
+    t.checkExpect(Arrays.equals(r.engine.board.state, g.board.state), true);
+    r.seek(2);
+    t.checkExpect(r.engine.flagsPlaced(), 1);
+    r.seek(6);
+    t.checkExpect(Arrays.equals(r.engine.board.state, g.board.state), true);
+  }
+
+
+
+  //test the Solver class
+  void testSolver(Tester t) {
+    //a 1 1 2 1 1 row under five hidden cells, mines over the 1s next to the 2:
+    //no single number decides a cell, the first two together do
+    Board b = new Board(2, 5);
+    b.setMine(b.index(1, 0));
+    b.setMine(b.index(3, 0));
+    b.recount();
+    for (int col = 0; col < 5; col += 1) {
+      b.reveal(b.index(col, 1));
+    }
+    Solver s = new Solver(new MineSweeperEngine(b));
+    int[] safe = s.nextSafeMoves();
+    t.checkExpect(s.lastRule, "pairs");
+    t.checkExpect(safe.length > 0, true);
+    for (int idx : safe) {
+      t.checkExpect(b.isMine(idx), false);
+    }
+    //the rest follows cell by cell
+    t.checkExpect(s.solveFully(), 3);
+    t.checkExpect(s.engine.won(), true);
+    t.checkExpect(s.isKnownMine(b.index(1, 0)), true);
+    t.checkExpect(s.isKnownMine(b.index(3, 0)), true);
+    t.checkExpect(s.nextSafeMoves().length, 0);
+
+    //a board with nothing revealed decides nothing
+    MineSweeperEngine e = new MineSweeperEngine(30, 40, 150, 5L, new ParallelBoardGenerator());
+    s = new Solver(e);
+    t.checkExpect(s.nextSafeMoves().length, 0);
+    t.checkExpect(s.lastRule, "stuck");
+    //from an opening it never reveals a mine, and what it calls a mine is one
+    e.keepUndo(1 << 20);
+    e.play(this.firstZero(e.board), MineSweeperEngine.REVEAL);
+    int before = e.cellsRemain();
+    t.checkExpect(s.solveFully() > 0, true);
+    t.checkExpect(e.lost(), false);
+    t.checkExpect(e.cellsRemain() < before, true);
+    for (int i = 0; i < e.board.size(); i += 1) {
+      if (s.isKnownMine(i)) {
+        t.checkExpect(e.board.isMine(i), true);
+      }
+    }
+    t.checkExpect(s.decisions > 0, true);
+    t.checkExpect(s.report().startsWith(s.lastRule), true);
+    //undoing takes back what was worked out from the undone cells,
+    //and the solver still sees the moves made through the undo journal
+    while (e.undo()) {
+      s.nextSafeMoves();
+    }
+    t.checkExpect(e.cellsRemain(), 30 * 40 - 150);
+    t.checkExpect(s.nextSafeMoves().length, 0);
+    e.play(this.firstZero(e.board), MineSweeperEngine.REVEAL);
+    t.checkExpect(s.nextSafeMoves().length > 0, true);
+    //a detached solver no longer keeps the board's moves, and starts
+    //afresh from the board when attached again
+    s.detach();
+    t.checkExpect(e.board.journal == null, true);
+    e.play(s.nextSafeMoves()[0], MineSweeperEngine.REVEAL);
+    t.checkExpect(s.fresh.isEmpty(), true);
+    Solver other = new Solver(e);
+    s.detach();
+    t.checkExpect(e.board.journal == other.fresh, true);
+    s.attach();
+    t.checkExpect(e.board.journal == s.fresh, true);
+    t.checkExpect(s.solveFully() > 0, true);
+    t.checkExpect(e.lost(), false);
+
+    //a frontier of 60000 cells in one part is searched without recursion
+    //and given up within the budget, and reusing the search's arrays
+    //does not change what the next part decides
+    Board ring = new Board(new TorusTopology(4, 30000));
+    for (int col = 0; col < 30000; col += 3) {
+      ring.setMine(ring.index(col, 1));
+    }
+    ring.recount();
+    for (int col = 0; col < 30000; col += 1) {
+      ring.reveal(ring.index(col, 0));
+    }
+    Solver wide = new Solver(new MineSweeperEngine(ring));
+    t.checkExpect(wide.nextSafeMoves().length, 0);
+    t.checkExpect(wide.lastRule, "stuck");
+    t.checkExpect(wide.lastNodes <= wide.maxNodes + 60000, true);
+    //nothing changed, so the part is not searched again
+    t.checkExpect(wide.nextSafeMoves().length, 0);
+    t.checkExpect(wide.lastRule, "stuck");
+    t.checkExpect(wide.lastNodes, 0L);
+    //a part with more cells than the budget is given up without a step
+    wide.maxNodes = 100;
+    wide.reset();
+    t.checkExpect(wide.nextSafeMoves().length, 0);
+    t.checkExpect(wide.lastNodes, 0L);
+  }
+
+
+
+  //test the MineProbability class
+  void testMineProbability(Tester t) {
+    //one row: the 1s at columns 1 and 3 share column 2, so either column 2
+    //holds a mine or columns 0 and 4 both do; the one other mine is among
+    //the three interior cells 5 to 7, which can hold it 3 ways, but only
+    //1 way when the frontier takes both mines
+    Board b = new Board(1, 8);
+    b.setMine(b.index(2, 0));
+    b.setMine(b.index(6, 0));
+    b.recount();
+    b.reveal(b.index(1, 0));
+    b.reveal(b.index(3, 0));
+    MineProbability p = new MineProbability(new MineSweeperEngine(b), 1L);
+    double[] chance = p.compute();
+    t.checkExpect(p.exact, true);
+    t.checkExpect(p.parts, 1);
+    t.checkInexact(chance[b.index(2, 0)], 0.75, 0.001);
+    t.checkInexact(chance[b.index(0, 0)], 0.25, 0.001);
+    t.checkInexact(p.chanceAt(4, 0), 0.25, 0.001);
+    t.checkInexact(chance[b.index(6, 0)], 0.25, 0.001);
+    t.checkExpect(chance[b.index(1, 0)], 0.0);
+    t.checkExpect(p.safest(), b.index(0, 0));
+    //nothing changed, so the part is not counted again
+    p.compute();
+    t.checkExpect(p.reused, 1);
+    //too small a budget falls back on samples
+    p = new MineProbability(new MineSweeperEngine(b), 1L);
+    p.maxNodes = 0;
+    chance = p.compute();
+    t.checkExpect(p.exact, false);
+    t.checkExpect(p.sampled, 1);
+    t.checkInexact(chance[b.index(2, 0)], 0.75, 0.05);
+    //and too big a frontier weighs each part on its own
+    p = new MineProbability(new MineSweeperEngine(b), 1L);
+    p.maxCombine = 0;
+    chance = p.compute();
+    t.checkExpect(p.exact, false);
+    double sum = 0;
+    for (double c : chance) {
+      sum += c;
+    }
+    t.checkInexact(sum, 2.0, 0.001);
+
+    //on an expert board what the solver knows is certain, and the
+    //chances add up to the number of mines
+    MineSweeperEngine e = new MineSweeperEngine(16, 30, 99, 9L, new ParallelBoardGenerator());
+    Solver s = new Solver(e);
+    e.play(this.firstZero(e.board), MineSweeperEngine.REVEAL);
+    s.solveFully();
+    p = new MineProbability(e, 2L);
+    chance = p.compute();
+    sum = 0;
+    for (int i = 0; i < e.board.size(); i += 1) {
+      sum += chance[i];
+      if (s.isKnownMine(i)) {
+        t.checkInexact(chance[i], 1.0, 0.000001);
+      }
+      if (!e.board.isRevealed(i) && s.isKnownSafe(i)) {
+        t.checkExpect(chance[i] < 0.000001, true);
+      }
+    }
+    t.checkInexact(sum, 99.0, 0.001);
+    t.checkExpect(e.board.isMine(p.safest()) && chance[p.safest()] < 0.000001, false);
+
+    //on a big board the mines the solver knows stay hidden and tie the
+    //frontier into one huge part, which is sampled within its budget
+    //instead of searched cell by cell
+    MineSweeperEngine huge = new MineSweeperEngine(500, 500, 50000, 1L,
+        new ParallelBoardGenerator());
+    for (int i = 0; i < huge.board.size(); i += 1) {
+      if (!huge.board.isMine(i) && huge.board.adjacent(i) == 0 && !huge.board.isRevealed(i)) {
+        huge.revealCell(i);
+      }
+    }
+    Solver big = new Solver(huge);
+    big.solveFully();
+    big.detach();
+    p = new MineProbability(huge, 1L);
+    chance = p.compute();
+    t.checkExpect(p.sampled > 0, true);
+    t.checkExpect(p.exact, false);
+    t.checkExpect(p.lastNodes <= p.maxNodes * (long) p.parts + p.sampleNodes * p.sampled
+        + huge.board.size(), true);
+    boolean inRange = true;
+    for (double c : chance) {
+      inRange = inRange && c >= 0 && c <= 1;
+    }
+    t.checkExpect(inRange, true);
+
+    //with hints on, every hidden cell in view is marked with its chance
+    Game g = new Game(16, 30, 99, 9L);
+    g.onCellClicked(this.firstZero(g.board), "LeftButton");
+    g.makeScene();
+    int placed = g.renderer.placed;
+    g.makeScene();
+    t.checkExpect(g.renderer.placed, placed);
+    g.onKeyEvent("h");
+    t.checkExpect(g.renderer.hints != null, true);
+    g.makeScene();
+    int hidden = 0;
+    for (int i = 0; i < g.board.size(); i += 1) {
+      if (!g.board.isRevealed(i) && !g.board.isFlagged(i)) {
+        hidden += 1;
+      }
+    }
+    t.checkExpect(g.renderer.placed - placed, 2 * 16 * 30 + hidden);
+    t.checkExpect(g.renderer.hints[g.board.index(0, 0)], g.hints.chance[g.board.index(0, 0)]);
+    t.checkExpect(SpriteCache.SHARED.hint(0, 25, 25),
+        new RectangleImage(8, 8, OutlineMode.SOLID, new Color(0, 255, 0)));
+    t.checkExpect(SpriteCache.SHARED.hint(1, 25, 25),
+        new RectangleImage(8, 8, OutlineMode.SOLID, new Color(255, 0, 0)));
+    //moves work the chances out again, and h turns the marks off
+    int cell = g.hints.safest();
+    g.onCellClicked(cell, "LeftButton");
+    t.checkExpect(g.renderer.hints[cell], 0.0);
+    g.onKeyEvent("h");
+    t.checkExpect(g.renderer.hints == null, true);
+    placed = g.renderer.placed;
+    g.makeScene();
+    t.checkExpect(g.renderer.placed - placed, 2 * 16 * 30);
+  }
+
+
+
+  //test the NoGuessGenerator class
+  void testNoGuessGenerator(Tester t) {
+    ForkJoinPool one = new ForkJoinPool(1);
+    ForkJoinPool four = new ForkJoinPool(4);
+    NoGuessGenerator gen = new NoGuessGenerator(four);
+    Board b = gen.generate(16, 30, 99, 21L, 15, 8);
+    t.checkExpect(MineSweeperEngine.minesOn(b), 99);
+    t.checkExpect(b.cellsRemain(), 16 * 30 - 99);
+    t.checkExpect(b.isMine(b.index(15, 8)), false);
+    t.checkExpect(b.adjacent(b.index(15, 8)), 0);
+    t.checkExpect(gen.lastCandidate >= 0, true);
+    //the counts are right and nothing is left revealed
+    byte[] counts = b.state.clone();
+    b.recount();
+    t.checkExpect(Arrays.equals(counts, b.state), true);
+    //a solver clears it from the first click without guessing
+    MineSweeperEngine e = new MineSweeperEngine(b, 99);
+    Solver s = new Solver(e);
+    e.play(b.index(15, 8), MineSweeperEngine.REVEAL);
+    s.solveFully();
+    t.checkExpect(e.won(), true);
+    //the same seed gives the same board on any number of cores
+    Board again = new NoGuessGenerator(one).generate(16, 30, 99, 21L, 15, 8);
+    t.checkExpect(Arrays.equals(counts, again.state), true);
+    Board other = gen.generate(16, 30, 99, 22L, 15, 8);
+    t.checkExpect(Arrays.equals(counts, other.state), false);
+    t.checkException(new IllegalArgumentException(
+        "Cannot place 472 mines on 480 cells keeping 9 free"), gen, "generate",
+        16, 30, 472, 21L, 15, 8);
+    //every board is cleared by a fresh solver, also where repairs changed
+    //numbers the generator's solver had used (seeds 122 and 169)
+    int unsolved = 0;
+    for (long seed = 0; seed < 200; seed += 1) {
+      Board nb = gen.generate(16, 30, 99, seed, 15, 8);
+      MineSweeperEngine ne = new MineSweeperEngine(nb, 99);
+      Solver ns = new Solver(ne);
+      ne.play(nb.index(15, 8), MineSweeperEngine.REVEAL);
+      ns.solveFully();
+      if (!ne.won()) {
+        unsolved += 1;
+      }
+    }
+    t.checkExpect(unsolved, 0);
+    one.shutdown();
+    four.shutdown();
+  }
+
+
+
+  //test protecting the first click of a game
+  void testFirstClick(Tester t) {
+    MineSweeperEngine e = new MineSweeperEngine(16, 30, 99, 4L, new ParallelBoardGenerator());
+    e.protectFirstClick(MineSweeperEngine.FIRST_CLICK_SAFE);
+    int mine = this.firstMine(e.board);
+    t.checkExpect(e.revealCell(mine) > 0, true);
+    t.checkExpect(e.lost(), false);
+    t.checkExpect(MineSweeperEngine.minesOn(e.board), 99);
+    //only the counts around the moved mine changed, and they are right
+    byte[] counts = e.board.state.clone();
+    e.board.recount();
+    t.checkExpect(Arrays.equals(counts, e.board.state), true);
+    e.board.verifyTotals();
+    //the second click is not protected
+    int other = this.firstMine(e.board);
+    e.revealCell(other);
+    t.checkExpect(e.lost(), true);
+
+    //an opening moves the mines off the neighbours as well
+    e = new MineSweeperEngine(16, 30, 99, 4L, new ParallelBoardGenerator());
+    e.protectFirstClick(MineSweeperEngine.FIRST_CLICK_OPENING);
+    t.checkExpect(e.revealCell(mine) > 1, true);
+    t.checkExpect(e.board.adjacent(mine), 0);
+    t.checkExpect(MineSweeperEngine.minesOn(e.board), 99);
+    //with no room for the neighbours' mines only the cell is kept safe
+    e = new MineSweeperEngine(3, 3, 7, 4L, new ParallelBoardGenerator());
+    e.protectFirstClick(MineSweeperEngine.FIRST_CLICK_OPENING);
+    e.revealCell(e.board.index(1, 1));
+    t.checkExpect(e.lost(), false);
+    t.checkExpect(MineSweeperEngine.minesOn(e.board), 7);
+    t.checkException(new IllegalArgumentException("Unknown first click mode 3"), e,
+        "protectFirstClick", 3);
+
+    //the mines stay uniform over the cells outside the opening: with two
+    //mines on cells 2 to 4 of a row, each holds one two times in three
+    int[] hits = new int[5];
+    Random rand = new Random(8);
+    for (int i = 0; i < 3000; i += 1) {
+      MineSweeperEngine row = new MineSweeperEngine(new GridTopology(1, 5), 2, rand,
+          new UniformPlacer());
+      row.protectFirstClick(MineSweeperEngine.FIRST_CLICK_OPENING);
+      row.revealCell(0);
+      for (int c = 0; c < 5; c += 1) {
+        hits[c] += row.board.isMine(c) ? 1 : 0;
+      }
+    }
+    t.checkExpect(hits[0] + hits[1], 0);
+    for (int c = 2; c < 5; c += 1) {
+      t.checkInexact(hits[c] / 3000.0, 2 / 3.0, 0.05);
+    }
+    //on a nearly full board most trials hit a mine, and the cell counted
+    //out instead is just as uniform: each of the two free cells gets the
+    //moved mine half the time
+    int[] full = new int[2];
+    for (int i = 0; i < 2000; i += 1) {
+      Board nb = new Board(1, 200);
+      for (int c = 0; c < 198; c += 1) {
+        nb.setMine(c);
+      }
+      nb.recount();
+      MineSweeperEngine ne = new MineSweeperEngine(nb);
+      ne.rand = rand;
+      ne.protectFirstClick(MineSweeperEngine.FIRST_CLICK_SAFE);
+      ne.revealCell(0);
+      t.checkExpect(nb.isMine(0) || MineSweeperEngine.minesOn(nb) != 198, false);
+      full[0] += nb.isMine(198) ? 1 : 0;
+      full[1] += nb.isMine(199) ? 1 : 0;
+    }
+    t.checkExpect(full[0] + full[1], 2000);
+    t.checkInexact(full[0] / 2000.0, 0.5, 0.05);
+
+    //the mode is logged, so the game replays the same
+    Game g = new Game(16, 30, 99, 4L, MineSweeperEngine.FIRST_CLICK_OPENING);
+    g.onCellClicked(mine, "LeftButton");
+    t.checkExpect(g.engine.lost(), false);
+    g.onCellClicked(this.firstHidden(g.board), "LeftButton");
+    Replay r = new Replay(g.log, 1);
+    r.runToEnd();
+    t.checkExpect(Arrays.equals(r.engine.board.state, g.board.state), true);
+    //going back past the first click and playing it again moves the
+    //mines the same way
+    r.seek(0);
+    r.runToEnd();
+    t.checkExpect(Arrays.equals(r.engine.board.state, g.board.state), true);
+  }
+
+
+
+  //test chording a revealed number
+  void testChord(Tester t) {
+    //one mine in the corner of a 3 x 5 board: chording the 1 next to it
+    //opens every other cell in one fill
+    Board b = new Board(3, 5);
+    b.setMine(b.index(0, 0));
+    b.recount();
+    MineSweeperEngine e = new MineSweeperEngine(b);
+    e.keepUndo(1 << 16);
+    e.reveal(1, 1);
+    e.toggleFlag(0, 0);
+    t.checkExpect(e.play(b.index(1, 1), MineSweeperEngine.CHORD), 13);
+    t.checkExpect(e.won(), true);
+    b.verifyTotals();
+    //the chord is one move to undo
+    t.checkExpect(e.undo(), true);
+    t.checkExpect(e.cellsRemain(), 13);
+    t.checkExpect(e.isRevealed(1, 1), true);
+
+    //with the wrong cell flagged the mine is revealed along with the rest
+    Board wrong = new Board(3, 5);
+    wrong.setMine(wrong.index(0, 0));
+    wrong.recount();
+    MineSweeperEngine e2 = new MineSweeperEngine(wrong);
+    e2.reveal(1, 1);
+    e2.toggleFlag(1, 0);
+    t.checkExpect(e2.chord(1, 1) > 1, true);
+    t.checkExpect(e2.lost(), true);
+    t.checkExpect(e2.isRevealed(0, 0), true);
+    t.checkExpect(e2.isRevealed(1, 0), false);
+    wrong.verifyTotals();
+
+    //the middle button chords, and the chord is logged and replayed
+    Game g = new Game(16, 30, 99, 6L);
+    Board gb = g.board;
+    int number = -1;
+    for (int i = 0; i < gb.size() && number < 0; i += 1) {
+      if (!gb.isMine(i) && gb.adjacent(i) == 1) {
+        number = i;
+      }
+    }
+    int[] around = new int[8];
+    int n = gb.neighbours(number, around);
+    g.onCellClicked(number, "LeftButton");
+    for (int k = 0; k < n; k += 1) {
+      if (gb.isMine(around[k])) {
+        g.onCellClicked(around[k], "RightButton");
+      }
+    }
+    int before = g.engine.cellsRemain();
+    g.onCellClicked(number, "MiddleButton");
+    t.checkExpect(g.engine.cellsRemain() < before, true);
+    t.checkExpect(g.engine.lost(), false);
+    t.checkExpect(g.log.moves, 3);
+    Replay r = new Replay(g.log, 10);
+    r.runToEnd();
+    t.checkExpect(Arrays.equals(r.engine.board.state, gb.state), true);
+  }
+
+
+
+  //test the Simulation harness and its strategies
+  void testSimulation(Tester t) {
+    //a board built into a used array is the same as a new one
+    ParallelBoardGenerator gen = new ParallelBoardGenerator();
+    Board used = gen.generate(16, 30, 99, 1L);
+    used.reveal(0);
+    used.setFlagged(1, true);
+    gen.generateInto(used, 99, 2L);
+    t.checkExpect(Arrays.equals(used.state, gen.generate(16, 30, 99, 2L).state), true);
+    t.checkExpect(used.cellsRemain(), 16 * 30 - 99);
+    t.checkExpect(used.flagsPlaced(), 0);
+
+    //the totals are the same whatever the number of threads
+    ForkJoinPool one = new ForkJoinPool(1);
+    ForkJoinPool four = new ForkJoinPool(4);
+    SimStats a = new Simulation(9, 9, 10, 3L, SolverStrategy::new, one).run(100);
+    SimStats b = new Simulation(9, 9, 10, 3L, SolverStrategy::new, four).run(100);
+    t.checkExpect(a.games.sum(), 100L);
+    t.checkExpect(a.wins.sum(), b.wins.sum());
+    t.checkExpect(a.clicks.sum(), b.clicks.sum());
+    t.checkExpect(a.threeBV.sum(), b.threeBV.sum());
+    //a solver wins most beginner games, clicking at random hardly any
+    t.checkExpect(a.winRate() > 0.6, true);
+    SimStats r = new Simulation(9, 9, 10, 3L, RandomStrategy::new, four).run(100);
+    t.checkExpect(r.winRate() < a.winRate(), true);
+    t.checkExpect(r.summary().startsWith("100 games"), true);
+
+    //progress is reported while the games run
+    Simulation sim = new Simulation(9, 9, 10, 3L, SolverStrategy::new, four);
+    ArrayList<Long> seen = new ArrayList<Long>();
+    sim.reportEvery = 25;
+    sim.progress = s -> {
+      synchronized (seen) {
+        seen.add(s.games.sum());
+      }
+    };
+    sim.run(100);
+    t.checkExpect(seen.size(), 4);
+    //the engines and boards of the workers are let go after the run
+    t.checkExpect(sim.workers.isEmpty(), true);
+
+    //a strategy kept from game to game samples each game from its own
+    //seed, as a new strategy would
+    SolverStrategy kept = new SolverStrategy();
+    MineSweeperEngine se = new MineSweeperEngine(9, 9, 10, 7L, new ParallelBoardGenerator());
+    kept.start(se, 0, 7L);
+    int steps = 0;
+    while (!se.isOver() && kept.step(se) >= 0) {
+      steps += 1;
+    }
+    t.checkExpect(steps > 0, true);
+    se.restart(8L, gen);
+    kept.start(se, 1, 8L);
+    t.checkExpect(kept.chances.rand.nextLong(), new java.util.SplittableRandom(8L).nextLong());
+    t.checkExpect(kept.chances.counts.isEmpty(), true);
+
+    //recorded games are played again from their own seeds
+    Game g = new Game(9, 9, 10, 5L, MineSweeperEngine.FIRST_CLICK_OPENING);
+    g.onCellClicked(40, "LeftButton");
+    ArrayList<MoveLog> logs = new ArrayList<MoveLog>();
+    logs.add(g.log);
+    SimStats played = new Simulation(9, 9, 10, 3L, () -> new LogStrategy(logs), four).run(3);
+    t.checkExpect(played.clicks.sum(), 3L);
+    t.checkExpect(played.wins.sum(), g.engine.won() ? 3L : 0L);
+    t.checkExpect(played.revealed.sum(), 3L * (71 - g.engine.cellsRemain()));
+    one.shutdown();
+    four.shutdown();
+  }
+
+
+
+  //the 3BV of the given board counted click by click: every empty cell
+  //not yet revealed is an opening, every safe cell still hidden after
+  //them is a click of its own
+  int clickCount(Board b) {
+    Board copy = new Board(b.topology);
+    System.arraycopy(b.state, 0, copy.state, 0, b.size());
+    FloodFill fill = new FloodFill(copy);
+    int clicks = 0;
+    for (int i = 0; i < copy.size(); i += 1) {
+      if (!copy.isMine(i) && copy.adjacent(i) == 0 && !copy.isRevealed(i)) {
+        fill.reveal(i);
+        clicks += 1;
+      }
+    }
+    for (int i = 0; i < copy.size(); i += 1) {
+      if (!copy.isMine(i) && !copy.isRevealed(i)) {
+        clicks += 1;
+      }
+    }
+    return clicks;
+  }
+
+
+  //test the BoardAnalytics class
+  void testBoardAnalytics(Tester t) {
+    //one mine in a corner leaves one opening, which takes in every other cell
+    Board corner = new Board(3, 3);
+    corner.setMine(0);
+    corner.recount();
+    BoardAnalytics a = BoardAnalytics.of(corner);
+    t.checkExpect(a.threeBV, 1);
+    t.checkExpect(a.openings, 1);
+    t.checkExpect(a.isolated, 0);
+    t.checkExpect(a.mines, 1);
+    t.checkExpect(a.empty, 5);
+    t.checkExpect(a.densities[1], 1L);
+    //mines in opposite corners leave two openings
+    corner.addMine(corner.index(2, 2));
+    t.checkExpect(a.measure(corner).openings, 2);
+    t.checkExpect(a.threeBV, 2);
+    //a mine in the middle leaves every cell a number on its own
+    Board middle = new Board(3, 3);
+    middle.addMine(middle.index(1, 1));
+    t.checkExpect(a.measure(middle).threeBV, 8);
+    t.checkExpect(a.isolated, 8);
+
+    //the column by column count agrees with clicking and with the
+    //union-find over every cell
+    Board big = new ParallelBoardGenerator().generate(200, 300, 9000, 5L);
+    BoardAnalytics grid = new BoardAnalytics(16).measure(big);
+    t.checkExpect(grid.threeBV, this.clickCount(big));
+    BoardAnalytics any = new BoardAnalytics(16);
+    any.measureAny(big);
+    t.checkExpect(any.openings, grid.openings);
+    t.checkExpect(any.isolated, grid.isolated);
+    t.checkExpect(any.empty, grid.empty);
+    t.checkExpect(Arrays.equals(any.densities, grid.densities), true);
+    long blocks = 0;
+    long mines = 0;
+    for (int k = 0; k < grid.densities.length; k += 1) {
+      blocks += grid.densities[k];
+      mines += k * grid.densities[k];
+    }
+    t.checkExpect(blocks, 13L * 19L);
+    t.checkExpect(mines, 9000L);
+    //other topologies go through the union-find over every cell
+    MineSweeperEngine hex = new MineSweeperEngine(new HexTopology(40, 50), 300, new Random(3),
+        new UniformPlacer());
+    t.checkExpect(BoardAnalytics.of(hex.board).threeBV, this.clickCount(hex.board));
+
+    Game g = new Game(16, 30, 99, 4L);
+    t.checkExpect(g.analytics().threeBV, this.clickCount(g.board));
+    t.checkExpect(g.analytics().summary().startsWith("3BV "), true);
+    t.checkConstructorException(new IllegalArgumentException("Blocks must be at least 1 cell wide"),
+        "BoardAnalytics", 0);
+  }
+
+
+
+  //test the Metrics of the game loop and its Histogram
+  void testMetrics(Tester t) {
+    //small values are counted exactly, bigger ones to within 1/16
+    t.checkExpect(Histogram.bucketOf(0), 0);
+    t.checkExpect(Histogram.bucketOf(31), 31);
+    t.checkExpect(Histogram.highestIn(Histogram.bucketOf(31)), 31L);
+    t.checkExpect(Histogram.highestIn(Histogram.bucketOf(32)), 33L);
+    t.checkExpect(Histogram.highestIn(Histogram.bucketOf(1000000)) >= 1000000, true);
+    t.checkExpect(Histogram.highestIn(Histogram.bucketOf(1000000)) < 1000000 * 17 / 16, true);
+    t.checkExpect(Histogram.bucketOf(Long.MAX_VALUE) < Histogram.BUCKETS, true);
+    Histogram h = new Histogram();
+    for (int v = 1; v <= 1000; v += 1) {
+      h.record(v);
+    }
+    t.checkExpect(h.count(), 1000L);
+    t.checkInexact(h.mean(), 500.5, 0.001);
+    t.checkExpect(h.valueAt(50) >= 500 && h.valueAt(50) <= 500 * 17 / 16, true);
+    t.checkExpect(h.valueAt(100), 1000L);
+    t.checkExpect(h.max(), 1000L);
+    h.reset();
+    t.checkExpect(h.count(), 0L);
+    t.checkExpect(h.valueAt(99), 0L);
+
+    //nothing is recorded while the metrics are off
+    Metrics.GAME.reset();
+    Metrics.enable(false);
+    Game g = new Game(16, 30, 99, 11L);
+    g.onCellClicked(g.board.index(15, 8), "LeftButton");
+    g.makeScene();
+    g.worldEnds();
+    t.checkExpect(Metrics.start(), 0L);
+    t.checkExpect(Metrics.GAME.clicks.sum(), 0L);
+    t.checkExpect(Metrics.GAME.scene.count(), 0L);
+
+    //once on, clicks, fills, frames and ends are counted
+    Metrics.enable(true);
+    int left = g.cellsRemain();
+    int cell = 0;
+    while (g.board.isMine(cell) || g.board.isRevealed(cell)) {
+      cell += 1;
+    }
+    g.onCellClicked(cell, "LeftButton");
+    g.onCellClicked(cell, "RightButton");
+    t.checkExpect(Metrics.GAME.clicks.sum(), 2L);
+    t.checkExpect(Metrics.GAME.cells.sum(), (long) (left - g.cellsRemain()));
+    t.checkExpect(Metrics.GAME.revealed.max(), (long) (left - g.cellsRemain()));
+    t.checkExpect(Metrics.GAME.flood.count(), 1L);
+    t.checkExpect(Metrics.GAME.click.count(), 2L);
+    g.makeScene();
+    t.checkExpect(Metrics.GAME.frames.sum(), 1L);
+    t.checkExpect(g.renderer.redrawn, false);
+    t.checkExpect(Metrics.GAME.images.sum() >= 2, true);
+    g.camera.zoomIn();
+    g.makeScene();
+    t.checkExpect(g.renderer.redrawn, true);
+    t.checkExpect(Metrics.GAME.frames.sum(), 2L);
+    t.checkExpect(Metrics.GAME.images.sum() >= 2 * 16 * 30, true);
+    //worldEnds times its checks only, and its scene is not another frame
+    long images = Metrics.GAME.images.sum();
+    g.worldEnds();
+    t.checkExpect(Metrics.GAME.ends.count(), 1L);
+    t.checkExpect(Metrics.GAME.frames.sum(), 2L);
+    t.checkExpect(Metrics.GAME.scene.count(), 2L);
+    t.checkExpect(Metrics.GAME.images.sum(), images);
+    t.checkExpect(Metrics.GAME.snapshot().startsWith("2 clicks,"), true);
+    t.checkExpect(Metrics.GAME.toJson().startsWith("{\"clicks\":2,\"cellsRevealed\":"), true);
+    t.checkExpect(Metrics.GAME.toJson().contains("\"worldEnds\":{\"count\":1,"), true);
+    Metrics.enable(false);
+    Metrics.GAME.reset();
   }
 
 
@@ -0,0 +1,451 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+//the rules of the game without any drawing: a board plus the moves a
+//player can make on it, addressed by column x and row y; nothing here
+//depends on javalib, so bots and tests can play games without a window
+class MineSweeperEngine {
+
+  //the moves a player can make on a cell, as recorded in a MoveLog
+  static final int REVEAL = 0;
+  static final int FLAG = 1;
+  static final int CHORD = 2;
+  static final int UNDO = 3;
+  static final int REDO = 4;
+
+  //how the first reveal of a game is protected: not at all, by moving a
+  //mine off the clicked cell, or by moving the mines off the clicked cell
+  //and its neighbours so it opens up
+  static final int FIRST_CLICK_ANY = 0;
+  static final int FIRST_CLICK_SAFE = 1;
+  static final int FIRST_CLICK_OPENING = 2;
+
+  Board board;
+  FloodFill filler;
+  //where placeMines and a protected first click draw from: the Random the
+  //engine was given, or one made from its seed when first needed
+  Random rand;
+  IMinePlacer placer;
+  int numMines;
+  //the seed the board was built from, 0 when it was not built from a seed
+  long seed;
+  int[] around;
+  //the moves made through play, or null when they cannot be undone
+  UndoJournal journal;
+  //one of FIRST_CLICK_ANY, FIRST_CLICK_SAFE or FIRST_CLICK_OPENING
+  int firstClick;
+
+
+  //constructor of MineSweeperEngine playing on a board that is already set up
+  MineSweeperEngine(Board board) {
+    this(board, MineSweeperEngine.minesOn(board));
+  }
+
+
+  //constructor of MineSweeperEngine playing on a board that is already
+  //set up and known to hold the given number of mines; more mines are
+  //placed among its free cells by a LegacyPlacer
+  MineSweeperEngine(Board board, int mines) {
+    this.board = board;
+    this.filler = new FloodFill(board);
+    this.around = new int[board.topology.maxDegree()];
+    this.placer = new LegacyPlacer();
+    this.numMines = mines;
+  }
+
+
+  //the number of mines on the given board
+  static int minesOn(Board board) {
+    int mines = 0;
+    for (int i = 0; i < board.size(); i += 1) {
+      if (board.isMine(i)) {
+        mines += 1;
+      }
+    }
+    return mines;
+  }
+
+
+  //constructor of MineSweeperEngine on a new board with the given topology
+  //and the given number of mines placed by placer
+  MineSweeperEngine(ITopology topology, int mines, Random rand, IMinePlacer placer) {
+    this.board = new Board(topology);
+    this.filler = new FloodFill(this.board);
+    this.around = new int[topology.maxDegree()];
+    this.rand = rand;
+    this.placer = placer;
+    this.placeMines(mines);
+  }
+
+
+  //constructor of MineSweeperEngine on a new rectangular board
+  MineSweeperEngine(int rows, int cols, int mines, Random rand, IMinePlacer placer) {
+    this(new GridTopology(rows, cols), mines, rand, placer);
+  }
+
+
+  //constructor of MineSweeperEngine on a new rectangular board built
+  //from the given seed by the given generator; restart builds the next
+  //one the same way, and placeMines adds mines among the free cells with
+  //a LegacyPlacer drawing from a Random made from the seed
+  MineSweeperEngine(int rows, int cols, int mines, long seed, ParallelBoardGenerator generator) {
+    this.board = generator.generate(rows, cols, mines, seed);
+    this.seed = seed;
+    this.filler = new FloodFill(this.board);
+    this.around = new int[this.board.topology.maxDegree()];
+    this.placer = new LegacyPlacer();
+    this.numMines = mines;
+  }
+
+
+  //EFFECT: start a new game on the same board, built from the given seed
+  //by the given generator with the same number of mines; the board's
+  //array is reused, the moves kept for undo are dropped, and later random
+  //picks are drawn from the new seed
+  public void restart(long seed, ParallelBoardGenerator generator) {
+    generator.generateInto(this.board, this.numMines, seed);
+    this.seed = seed;
+    this.rand = null;
+    if (this.journal != null) {
+      this.journal = new UndoJournal(this.board, this.journal.maxBytes);
+    }
+  }
+
+
+  //EFFECT: place the given number of mines on the free cells of the
+  //board and refresh the adjacency counts; placers other than LegacyPlacer
+  //need an empty board, so mines added to a board that holds some already
+  //are placed by a LegacyPlacer; throws if the placer did not place
+  //exactly the mines asked for
+  public void placeMines(int mines) {
+    int free = this.board.size() - this.numMines;
+    if (mines > free) {
+      throw new IllegalArgumentException("Cannot place " + mines + " more mines on "
+          + free + " free cells");
+    }
+    IMinePlacer by = this.numMines > 0 ? new LegacyPlacer() : this.placer;
+    by.place(this.board, mines, this.random());
+    this.board.recount();
+    int found = MineSweeperEngine.minesOn(this.board);
+    if (found != this.numMines + mines) {
+      throw new IllegalStateException("Mine count out of date: expected "
+          + (this.numMines + mines) + " mines but found " + found);
+    }
+    this.numMines = found;
+  }
+
+
+  //the Random the engine draws from, made from its seed the first time
+  //when the engine was not given one
+  Random random() {
+    if (this.rand == null) {
+      this.rand = new Random(this.seed);
+    }
+    return this.rand;
+  }
+
+
+  //EFFECT: let reveals that open more than threshold cells at once
+  //finish on the given pool
+  public void useParallelReveal(ForkJoinPool pool, int threshold) {
+    this.filler.useParallel(new ParallelFloodFill(this.board, pool), threshold);
+  }
+
+
+  //the number of rows of the board
+  public int numRows() {
+    return this.board.numRows;
+  }
+
+
+  //the number of columns of the board
+  public int numCols() {
+    return this.board.numCols;
+  }
+
+
+  //the index of the cell at column x and row y
+  public int indexOf(int x, int y) {
+    if (!this.board.inBounds(x, y)) {
+      throw new IndexOutOfBoundsException("No cell at (" + x + ", " + y + ")");
+    }
+    return this.board.index(x, y);
+  }
+
+
+  //EFFECT: reveal the cell at column x and row y like a left click,
+  //return how many cells were newly revealed
+  public int reveal(int x, int y) {
+    return this.revealCell(this.indexOf(x, y));
+  }
+
+
+  //EFFECT: flag or unflag the cell at column x and row y like a right click
+  public void toggleFlag(int x, int y) {
+    this.toggleFlagCell(this.indexOf(x, y));
+  }
+
+
+  //EFFECT: reveal every unflagged neighbour of the revealed number cell
+  //at column x and row y once as many neighbours are flagged as it has
+  //adjacent mines, return how many cells were newly revealed
+  public int chord(int x, int y) {
+    return this.chordCell(this.indexOf(x, y));
+  }
+
+
+  //EFFECT: keep the moves made through play, up to the given number of
+  //bytes of them, so they can be undone
+  public void keepUndo(int maxBytes) {
+    this.journal = new UndoJournal(this.board, maxBytes);
+  }
+
+
+  //EFFECT: protect the first reveal of the game as the given mode
+  //(FIRST_CLICK_ANY, FIRST_CLICK_SAFE or FIRST_CLICK_OPENING) says
+  public void protectFirstClick(int mode) {
+    if (mode < FIRST_CLICK_ANY || mode > FIRST_CLICK_OPENING) {
+      throw new IllegalArgumentException("Unknown first click mode " + mode);
+    }
+    this.firstClick = mode;
+  }
+
+
+  //EFFECT: take back the last move made through play,
+  //return false if there is none
+  public boolean undo() {
+    return this.journal != null && this.journal.undo();
+  }
+
+
+  //EFFECT: make the last undone move again, return false if there is none
+  public boolean redo() {
+    return this.journal != null && this.journal.redo();
+  }
+
+
+  //EFFECT: make the given move (REVEAL, FLAG, CHORD, UNDO or REDO) on the
+  //cell at the given index, return how many cells were newly revealed
+  //(undo and redo ignore the cell and return 1 when they did something)
+  public int play(int idx, int move) {
+    if (move == UNDO) {
+      return this.undo() ? 1 : 0;
+    }
+    if (move == REDO) {
+      return this.redo() ? 1 : 0;
+    }
+    if (this.journal == null) {
+      return this.move(idx, move);
+    }
+    this.journal.begin();
+    int revealed = this.move(idx, move);
+    this.journal.end();
+    return revealed;
+  }
+
+
+  //EFFECT: make the given move on the cell at the given index
+  int move(int idx, int move) {
+    if (move == REVEAL) {
+      return this.revealCell(idx);
+    }
+    if (move == FLAG) {
+      this.toggleFlagCell(idx);
+      return 0;
+    }
+    if (move == CHORD) {
+      return this.chordCell(idx);
+    }
+    throw new IllegalArgumentException("Unknown move " + move);
+  }
+
+
+  //EFFECT: reveal the cell at the given index: flooding out from safe
+  //cells and exposing mines, flagged cells are left alone
+  public int revealCell(int idx) {
+    if (this.board.isFlagged(idx)) {
+      return 0;
+    }
+    if (this.firstClick != FIRST_CLICK_ANY && this.untouched()) {
+      this.clearAround(idx);
+    }
+    if (this.board.isMine(idx)) {
+      boolean fresh = !this.board.isRevealed(idx);
+      this.board.reveal(idx);
+      return fresh ? 1 : 0;
+    }
+    return this.filler.reveal(idx);
+  }
+
+
+  //check if nothing has been revealed yet
+  boolean untouched() {
+    return this.board.minesRevealed == 0
+        && this.board.safeHidden == this.board.size() - this.numMines;
+  }
+
+
+  //EFFECT: move the mines off the cell at the given index (and off its
+  //neighbours when the first click should open up and there is room for
+  //them elsewhere), each to a cell picked uniformly among the safe cells
+  //outside that area, so the mines stay uniformly spread over the cells
+  //outside it; only the cells of the area, the cells the mines move to and
+  //the counts around them are touched, nothing the size of the board
+  //(the random picks come from the engine's Random, see random)
+  void clearAround(int idx) {
+    Board b = this.board;
+    int[] cleared = new int[this.around.length + 1];
+    cleared[0] = idx;
+    int area = 1;
+    if (this.firstClick == FIRST_CLICK_OPENING) {
+      int n = b.neighbours(idx, this.around);
+      if (this.numMines <= b.size() - n - 1) {
+        System.arraycopy(this.around, 0, cleared, 1, n);
+        area = n + 1;
+      }
+    }
+    int moving = 0;
+    for (int k = 0; k < area; k += 1) {
+      if (b.isMine(cleared[k])) {
+        moving += 1;
+      }
+    }
+    int room = b.size() - area - (this.numMines - moving);
+    if (moving == 0 || room < moving) {
+      return;
+    }
+    Random r = this.random();
+    for (int k = 0; k < area; k += 1) {
+      int cell = cleared[k];
+      if (b.isMine(cell)) {
+        b.moveMine(cell, this.freeCell(cleared, area, room, r));
+        room -= 1;
+      }
+    }
+  }
+
+
+  //a cell picked uniformly among the room safe cells outside the first
+  //area cells of cleared: by trial a bounded number of times, and when the
+  //board is so full that every trial hit a mine, by counting out a random
+  //one of them, which scans the board but allocates nothing
+  int freeCell(int[] cleared, int area, int room, Random r) {
+    Board b = this.board;
+    for (int tries = 0; tries < 64; tries += 1) {
+      int to = r.nextInt(b.size());
+      if (!b.isMine(to) && !MineSweeperEngine.contains(cleared, area, to)) {
+        return to;
+      }
+    }
+    int skip = r.nextInt(room);
+    for (int i = 0; i < b.size(); i += 1) {
+      if (!b.isMine(i) && !MineSweeperEngine.contains(cleared, area, i)) {
+        if (skip == 0) {
+          return i;
+        }
+        skip -= 1;
+      }
+    }
+    throw new IllegalStateException("No safe cell left outside the first click");
+  }
+
+
+  //check if value is among the first count entries of cells
+  static boolean contains(int[] cells, int count, int value) {
+    for (int k = 0; k < count; k += 1) {
+      if (cells[k] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  //EFFECT: flag the cell at the given index if it is hidden and
+  //not flagged, remove its flag otherwise
+  public void toggleFlagCell(int idx) {
+    this.board.setFlagged(idx, !this.board.isFlagged(idx) && !this.board.isRevealed(idx));
+  }
+
+
+  //EFFECT: chord on the cell at the given index: its hidden unflagged
+  //neighbours are revealed as one batch (see FloodFill.revealAll), a
+  //neighbour wrongly left unflagged reveals its mine and loses the game
+  public int chordCell(int idx) {
+    if (!this.board.isRevealed(idx) || this.board.isMine(idx) 
+        || this.board.adjacent(idx) == 0) {
+      return 0;
+    }
+    int n = this.board.neighbours(idx, this.around);
+    int flags = 0;
+    int hidden = 0;
+    for (int k = 0; k < n; k += 1) {
+      int next = this.around[k];
+      if (this.board.isFlagged(next)) {
+        flags += 1;
+      }
+      else if (!this.board.isRevealed(next)) {
+        this.around[hidden] = next;
+        hidden += 1;
+      }
+    }
+    if (flags != this.board.adjacent(idx)) {
+      return 0;
+    }
+    return this.filler.revealAll(this.around, hidden);
+  }
+
+
+  //check if the cell at column x and row y is revealed
+  public boolean isRevealed(int x, int y) {
+    return this.board.isRevealed(this.indexOf(x, y));
+  }
+
+
+  //check if the cell at column x and row y is flagged
+  public boolean isFlagged(int x, int y) {
+    return this.board.isFlagged(this.indexOf(x, y));
+  }
+
+
+  //check if the cell at column x and row y is a mine
+  public boolean isMine(int x, int y) {
+    return this.board.isMine(this.indexOf(x, y));
+  }
+
+
+  //the number of mines around the cell at column x and row y
+  public int adjacent(int x, int y) {
+    return this.board.adjacent(this.indexOf(x, y));
+  }
+
+
+  //the number of safe cells that are still hidden
+  public int cellsRemain() {
+    return this.board.cellsRemain();
+  }
+
+
+  //the number of flags on the board
+  public int flagsPlaced() {
+    return this.board.flagsPlaced();
+  }
+
+
+  //check if every safe cell has been revealed
+  public boolean won() {
+    return this.board.cellsRemain() == 0;
+  }
+
+
+  //check if a mine has been revealed
+  public boolean lost() {
+    return this.board.mineRevealed();
+  }
+
+
+  //check if the game is over either way
+  public boolean isOver() {
+    return this.won() || this.lost();
+  }
+}
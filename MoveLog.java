@@ -0,0 +1,203 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+//the moves of one game, in the order they were made: a header with the
+//seed and size of the board (enough to build the same board again), then
+//one record per move of four varints: column, row, move (see
+//MineSweeperEngine.REVEAL and friends) and ticks since the previous move;
+//a typical move takes 4 or 5 bytes
+//
+//header (big-endian): int magic, short version, long seed,
+//  int rows, int cols, int mines, byte firstClick (from version 2 on,
+//  see MineSweeperEngine.FIRST_CLICK_ANY and friends)
+class MoveLog {
+
+  static final int MAGIC = 0x4D53574C;
+  static final short VERSION = 2;
+
+  long seed;
+  int rows;
+  int cols;
+  int mines;
+  //how the first click of the game was protected
+  int firstClick;
+  //the records, bytes[0] to bytes[length - 1]
+  byte[] bytes;
+  int length;
+  int moves;
+  //the number of those moves that were undos or redos
+  int undos;
+  int lastTick;
+  //where every new record is also written, or null
+  OutputStream sink;
+
+
+  //constructor of an empty MoveLog for a board built from the given seed
+  MoveLog(long seed, int rows, int cols, int mines) {
+    this.seed = seed;
+    this.rows = rows;
+    this.cols = cols;
+    this.mines = mines;
+    this.bytes = new byte[64];
+  }
+
+
+  //EFFECT: add the move made on the cell at column x and row y at the given tick
+  public void append(int x, int y, int move, int tick) {
+    int start = this.length;
+    this.putVarint(x);
+    this.putVarint(y);
+    this.putVarint(move);
+    this.putVarint(tick - this.lastTick);
+    this.lastTick = tick;
+    this.moves += 1;
+    if (move == MineSweeperEngine.UNDO || move == MineSweeperEngine.REDO) {
+      this.undos += 1;
+    }
+    if (this.sink != null) {
+      try {
+        this.sink.write(this.bytes, start, this.length - start);
+        this.sink.flush();
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+
+  //EFFECT: add v (which is not negative) to the records
+  void putVarint(int v) {
+    if (this.length + 5 > this.bytes.length) {
+      this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, 64));
+    }
+    this.length = MoveLog.putVarint(this.bytes, this.length, v);
+  }
+
+
+  //the varint of the records starting at pos[0], moving pos[0] past it
+  int getVarint(int[] pos) {
+    return MoveLog.getVarint(this.bytes, pos);
+  }
+
+
+  //EFFECT: write v (which is not negative) into out from index at on,
+  //7 bits at a time, lowest first, the top bit of a byte telling whether
+  //another byte follows; return the index after it (out needs room for 5 bytes)
+  static int putVarint(byte[] out, int at, int v) {
+    while ((v & ~0x7F) != 0) {
+      out[at] = (byte) ((v & 0x7F) | 0x80);
+      at += 1;
+      v >>>= 7;
+    }
+    out[at] = (byte) v;
+    return at + 1;
+  }
+
+
+  //the varint of in starting at pos[0], moving pos[0] past it
+  static int getVarint(byte[] in, int[] pos) {
+    int v = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = in[pos[0]];
+      pos[0] += 1;
+      v |= (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return v;
+  }
+
+
+  //EFFECT: write the header and the moves so far to out, then keep
+  //writing every new move to it as soon as it is made
+  public void logTo(OutputStream out) throws IOException {
+    this.writeTo(out);
+    out.flush();
+    this.sink = out;
+  }
+
+
+  //EFFECT: write the header and every move to out
+  public void writeTo(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeShort(VERSION);
+    data.writeLong(this.seed);
+    data.writeInt(this.rows);
+    data.writeInt(this.cols);
+    data.writeInt(this.mines);
+    data.writeByte(this.firstClick);
+    data.write(this.bytes, 0, this.length);
+    data.flush();
+  }
+
+
+  //EFFECT: write the log to the given file
+  public void save(Path file) throws IOException {
+    try (OutputStream out = Files.newOutputStream(file)) {
+      this.writeTo(out);
+    }
+  }
+
+
+  //the log written to the given file
+  static MoveLog load(Path file) throws IOException {
+    try (InputStream in = Files.newInputStream(file)) {
+      return MoveLog.read(in);
+    }
+  }
+
+
+  //the log read from in up to its end (a record cut off at the end,
+  //from a game that stopped while writing, is dropped)
+  static MoveLog read(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a MineSweeper move log");
+    }
+    short version = data.readShort();
+    if (version < 1 || version > VERSION) {
+      throw new IOException("Unsupported move log version " + version);
+    }
+    MoveLog log = new MoveLog(data.readLong(), data.readInt(), data.readInt(), data.readInt());
+    if (version >= 2) {
+      log.firstClick = data.readByte();
+    }
+    byte[] records = data.readAllBytes();
+    int[] pos = new int[1];
+    log.bytes = records;
+    while (log.complete(pos[0])) {
+      log.getVarint(pos);
+      log.getVarint(pos);
+      int move = log.getVarint(pos);
+      log.lastTick += log.getVarint(pos);
+      log.moves += 1;
+      if (move == MineSweeperEngine.UNDO || move == MineSweeperEngine.REDO) {
+        log.undos += 1;
+      }
+    }
+    log.length = pos[0];
+    return log;
+  }
+
+
+  //check if a whole record starts at the given offset of bytes
+  boolean complete(int offset) {
+    int ends = 0;
+    for (int i = offset; i < this.bytes.length && ends < 4; i += 1) {
+      if ((this.bytes[i] & 0x80) == 0) {
+        ends += 1;
+      }
+    }
+    return ends == 4;
+  }
+}
@@ -0,0 +1,315 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//builds rectangular boards that a player can clear from a given first
+//click without ever guessing: the clicked cell and its neighbours are
+//kept free of mines, and a candidate board is played by a Solver from
+//that click; where the solver gets stuck the board is repaired on the
+//spot (a mine on an undecided frontier cell is moved to the interior, or
+//an interior mine onto an undecided safe cell) and the solver carries on
+//from there, instead of starting over with a new board; as repairs can
+//change numbers the solver had already used, a board it cleared after
+//repairs is played once more from scratch before it is kept
+//
+//candidates are tried a batch at a time on the pool, each with its own
+//random source split from the seed in order, and the first candidate (by
+//number) that works is kept, so the board only depends on the seed;
+//mines are no longer uniformly placed, the repairs favour boards without
+//guesses
+class NoGuessGenerator {
+
+  //how many candidates are started together
+  static final int BATCH = 8;
+
+  ForkJoinPool pool;
+  //how many repairs one candidate may make, and how many candidates
+  //are tried before giving up
+  int maxRepairs;
+  int maxCandidates;
+  //the candidate the last board came from, and the repairs it needed
+  int lastCandidate;
+  int lastRepairs;
+
+
+  //constructor of NoGuessGenerator running on the given pool
+  NoGuessGenerator(ForkJoinPool pool) {
+    this.pool = pool;
+    this.maxRepairs = 2000;
+    this.maxCandidates = 256;
+  }
+
+
+  //constructor of NoGuessGenerator running on the common pool
+  NoGuessGenerator() {
+    this(ForkJoinPool.commonPool());
+  }
+
+
+  //a new board of the given size with the given number of mines, built
+  //from the given seed, that can be cleared without guessing by first
+  //clicking the cell at column col and row row; nothing on it is revealed
+  public Board generate(int rows, int cols, int mines, long seed, int col, int row) {
+    Board probe = new Board(rows, cols);
+    if (!probe.inBounds(col, row)) {
+      throw new IndexOutOfBoundsException("No cell at (" + col + ", " + row + ")");
+    }
+    int start = probe.index(col, row);
+    int free = probe.neighbours(start, new int[probe.topology.maxDegree()]) + 1;
+    if (mines < 0 || mines > probe.size() - free) {
+      throw new IllegalArgumentException("Cannot place " + mines + " mines on "
+          + probe.size() + " cells keeping " + free + " free");
+    }
+    SplittableRandom root = new SplittableRandom(seed);
+    for (int first = 0; first < this.maxCandidates; first += BATCH) {
+      int count = Math.min(BATCH, this.maxCandidates - first);
+      Candidate[] batch = new Candidate[count];
+      for (int i = 0; i < count; i += 1) {
+        batch[i] = new Candidate(rows, cols, mines, start, root.split(), this.maxRepairs);
+      }
+      AtomicInteger best = new AtomicInteger(count);
+      this.pool.invoke(new CandidateTask(batch, 0, count, best));
+      if (best.get() < count) {
+        Candidate won = batch[best.get()];
+        this.lastCandidate = first + best.get();
+        this.lastRepairs = won.repairs;
+        return won.cleared();
+      }
+    }
+    throw new IllegalStateException("No board without guesses found in "
+        + this.maxCandidates + " candidates");
+  }
+}
+
+
+//one board being tried by a NoGuessGenerator
+class Candidate {
+
+  int mines;
+  int start;
+  SplittableRandom rand;
+  int maxRepairs;
+  Board board;
+  MineSweeperEngine engine;
+  Solver solver;
+  //whether the cell at each index must stay free of mines
+  boolean[] keepFree;
+  int[] around;
+  int repairs;
+  //whether the solver has played the board from the first click with no
+  //repair since
+  boolean clean;
+
+
+  //constructor of Candidate
+  Candidate(int rows, int cols, int mines, int start, SplittableRandom rand, int maxRepairs) {
+    this.board = new Board(rows, cols);
+    this.mines = mines;
+    this.start = start;
+    this.rand = rand;
+    this.maxRepairs = maxRepairs;
+    this.around = new int[this.board.topology.maxDegree()];
+  }
+
+
+  //EFFECT: place the mines, then play and repair the board until a
+  //solver clears it from the first click with no repair on the way;
+  //return false if it ran out of repairs, or once a candidate numbered
+  //below this one (number) has worked
+  boolean run(int number, AtomicInteger best) {
+    this.placeMines();
+    this.replay();
+    while (best.get() > number) {
+      this.solver.solveFully();
+      if (this.engine.won() && this.clean) {
+        return true;
+      }
+      if (this.engine.won()) {
+        //the repairs may have changed numbers the solver used on the
+        //way, so it has to clear the board again without them
+        this.replay();
+        continue;
+      }
+      if (this.repairs == this.maxRepairs || !this.repair()) {
+        return false;
+      }
+      this.repairs += 1;
+      this.clean = false;
+      this.solver.reset();
+    }
+    return false;
+  }
+
+
+  //EFFECT: hide every cell again and have a new solver play the board
+  //from the first click
+  void replay() {
+    this.cleared();
+    this.engine = new MineSweeperEngine(this.board, this.mines);
+    this.solver = new Solver(this.engine);
+    this.engine.play(this.start, MineSweeperEngine.REVEAL);
+    this.clean = true;
+  }
+
+
+  //EFFECT: place the mines uniformly among the cells that need not stay free
+  //(Floyd's sampling over the indices with the free cells skipped)
+  void placeMines() {
+    Board b = this.board;
+    int n = b.size();
+    this.keepFree = new boolean[n];
+    this.keepFree[this.start] = true;
+    int k = b.neighbours(this.start, this.around);
+    for (int j = 0; j < k; j += 1) {
+      this.keepFree[this.around[j]] = true;
+    }
+    int[] open = new int[n - k - 1];
+    int m = 0;
+    for (int i = 0; i < n; i += 1) {
+      if (!this.keepFree[i]) {
+        open[m] = i;
+        m += 1;
+      }
+    }
+    for (int j = m - this.mines; j < m; j += 1) {
+      int pick = open[this.rand.nextInt(j + 1)];
+      if (b.isMine(pick)) {
+        pick = open[j];
+      }
+      b.setMine(pick);
+    }
+    b.recount();
+  }
+
+
+  //EFFECT: change the board around a random undecided frontier cell so the
+  //solver can get further: a mine there moves to a random interior cell,
+  //a safe cell takes a random interior mine; return false if there was
+  //nothing to change
+  boolean repair() {
+    Board b = this.board;
+    IntStack undecided = new IntStack(64);
+    for (int i = 0; i < b.size(); i += 1) {
+      if (!b.isRevealed(i) && !this.solver.isKnownMine(i) && this.nearRevealed(i)) {
+        undecided.push(i);
+      }
+    }
+    if (undecided.isEmpty()) {
+      return false;
+    }
+    int cell = undecided.items[this.rand.nextInt(undecided.size)];
+    int other = this.interior(!b.isMine(cell), cell);
+    if (other < 0) {
+      return false;
+    }
+    if (b.isMine(cell)) {
+      b.moveMine(cell, other);
+    }
+    else {
+      b.moveMine(other, cell);
+    }
+    return true;
+  }
+
+
+  //check if the cell at idx is next to a revealed cell
+  boolean nearRevealed(int idx) {
+    int n = this.board.neighbours(idx, this.around);
+    for (int k = 0; k < n; k += 1) {
+      if (this.board.isRevealed(this.around[k])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  //a random hidden cell other than cell that does (mine) or does not hold
+  //a mine and need not stay free, away from every revealed cell if there
+  //is one, or -1 if there is none at all
+  int interior(boolean mine, int cell) {
+    Board b = this.board;
+    int n = b.size();
+    for (int tries = 0; tries < 64; tries += 1) {
+      int idx = this.rand.nextInt(n);
+      if (this.fits(idx, mine, cell) && !this.nearRevealed(idx)) {
+        return idx;
+      }
+    }
+    int from = this.rand.nextInt(n);
+    int near = -1;
+    for (int k = 0; k < n; k += 1) {
+      int idx = (from + k) % n;
+      if (this.fits(idx, mine, cell)) {
+        if (!this.nearRevealed(idx)) {
+          return idx;
+        }
+        if (near < 0) {
+          near = idx;
+        }
+      }
+    }
+    return near;
+  }
+
+
+  //check if the cell at idx could be given or take a mine by a repair at cell
+  boolean fits(int idx, boolean mine, int cell) {
+    return idx != cell && !this.board.isRevealed(idx) && this.board.isMine(idx) == mine
+        && !this.keepFree[idx];
+  }
+
+
+  //the board with every cell hidden again (its mines and counts kept)
+  Board cleared() {
+    Board b = this.board;
+    if (this.solver != null) {
+      this.solver.detach();
+    }
+    for (int i = 0; i < b.size(); i += 1) {
+      b.state[i] &= Board.MINE | Board.COUNT_MASK;
+    }
+    b.retally();
+    return b;
+  }
+}
+
+
+//tries a range of candidates, splitting the range in half until a single
+//candidate is left; best holds the lowest number of a candidate that
+//worked, and candidates above it are not run
+class CandidateTask extends RecursiveAction {
+
+  private static final long serialVersionUID = 1L;
+
+  Candidate[] candidates;
+  int from;
+  int to;
+  AtomicInteger best;
+
+
+  //constructor of CandidateTask
+  CandidateTask(Candidate[] candidates, int from, int to, AtomicInteger best) {
+    this.candidates = candidates;
+    this.from = from;
+    this.to = to;
+    this.best = best;
+  }
+
+
+  //EFFECT: run every candidate of the range that could still be the best
+  protected void compute() {
+    if (this.to - this.from <= 1) {
+      for (int i = this.from; i < this.to; i += 1) {
+        if (i < this.best.get() && this.candidates[i].run(i, this.best)) {
+          this.best.accumulateAndGet(i, Math::min);
+        }
+      }
+      return;
+    }
+    int mid = (this.from + this.to) >>> 1;
+    invokeAll(new CandidateTask(this.candidates, this.from, mid, this.best),
+        new CandidateTask(this.candidates, mid, this.to, this.best));
+  }
+}
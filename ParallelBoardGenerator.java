@@ -0,0 +1,187 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//builds large rectangular boards on several cores: the board is cut into
+//stripes of whole columns (each a contiguous range of cell indices), every
+//stripe places its own mines with its own SplittableRandom and then counts
+//its own adjacency, reading the mine bits of the columns just outside it
+//once all stripes have placed their mines;
+//the stripes, their mine counts and their random sources only depend on
+//the board size and the seed, so the board is the same for any pool size
+//
+//mines are spread over the stripes in proportion to their size (the few
+//left over go to stripes picked at random) rather than by a global draw,
+//which is indistinguishable on boards large enough to need this class
+class ParallelBoardGenerator {
+
+  //about how many cells one stripe holds
+  static final int STRIPE_CELLS = 1 << 16;
+
+  ForkJoinPool pool;
+
+
+  //constructor of ParallelBoardGenerator running on the given pool
+  ParallelBoardGenerator(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+
+  //constructor of ParallelBoardGenerator running on the common pool
+  ParallelBoardGenerator() {
+    this(ForkJoinPool.commonPool());
+  }
+
+
+  //a new board of the given size with the given number of mines placed
+  //from the given seed and every adjacency count filled in
+  public Board generate(int rows, int cols, int mines, long seed) {
+    Board board = new Board(rows, cols);
+    this.generateInto(board, mines, seed);
+    return board;
+  }
+
+
+  //EFFECT: clear the given rectangular board and place the given number
+  //of mines on it from the given seed, exactly as generate would, so its
+  //array can be used for game after game
+  public void generateInto(Board board, int mines, long seed) {
+    int cells = board.size();
+    if (mines < 0 || mines > cells) {
+      throw new IllegalArgumentException("Cannot place " + mines + " mines on "
+          + cells + " cells");
+    }
+    Arrays.fill(board.state, (byte) 0);
+    ArrayList<Stripe> stripes = this.stripes(board, mines, new SplittableRandom(seed));
+    this.pool.invoke(new StripeTask(stripes, 0, stripes.size(), true));
+    this.pool.invoke(new StripeTask(stripes, 0, stripes.size(), false));
+    board.safeHidden = 0;
+    board.minesRevealed = 0;
+    board.flagCount = 0;
+    for (Stripe s : stripes) {
+      board.safeHidden += s.cols * board.numRows - s.mines;
+    }
+    if (board.changed != null) {
+      board.changed.clear();
+    }
+  }
+
+
+  //cut the board into stripes and decide how many mines each one gets
+  ArrayList<Stripe> stripes(Board board, int mines, SplittableRandom root) {
+    int rows = Math.max(board.numRows, 1);
+    int width = Math.max(1, STRIPE_CELLS / rows);
+    ArrayList<Stripe> stripes = new ArrayList<Stripe>();
+    long cells = board.size();
+    int given = 0;
+    for (int col = 0; col < board.numCols; col += width) {
+      int cols = Math.min(width, board.numCols - col);
+      int share = cells == 0 ? 0 : (int) ((long) mines * cols * board.numRows / cells);
+      stripes.add(new Stripe(board, col, cols, share, root.split()));
+      given += share;
+    }
+    //hand the rest out one by one to random stripes that still have room
+    while (given < mines) {
+      Stripe s = stripes.get(root.nextInt(stripes.size()));
+      if (s.mines < s.cols * board.numRows) {
+        s.mines += 1;
+        given += 1;
+      }
+    }
+    return stripes;
+  }
+}
+
+
+//represents the columns fromCol to fromCol + cols of a board being generated
+class Stripe {
+
+  Board board;
+  int fromCol;
+  int cols;
+  int mines;
+  SplittableRandom rand;
+
+
+  //constructor of Stripe
+  Stripe(Board board, int fromCol, int cols, int mines, SplittableRandom rand) {
+    this.board = board;
+    this.fromCol = fromCol;
+    this.cols = cols;
+    this.mines = mines;
+    this.rand = rand;
+  }
+
+
+  //EFFECT: place this stripe's mines uniformly among its cells
+  //(Floyd's sampling, the safe cells are sampled when most are mines)
+  void placeMines() {
+    byte[] state = this.board.state;
+    int base = this.fromCol * this.board.numRows;
+    int n = this.cols * this.board.numRows;
+    boolean dense = this.mines > n / 2;
+    int picks = dense ? n - this.mines : this.mines;
+    for (int j = n - picks; j < n; j += 1) {
+      int idx = this.rand.nextInt(j + 1);
+      if ((state[base + idx] & Board.MINE) != 0) {
+        idx = j;
+      }
+      state[base + idx] |= Board.MINE;
+    }
+    if (dense) {
+      for (int i = base; i < base + n; i += 1) {
+        state[i] ^= Board.MINE;
+      }
+    }
+  }
+
+
+  //EFFECT: fill in the adjacency counts of this stripe's cells
+  void count() {
+    ((GridTopology) this.board.topology).recountColumns(this.board.state, this.fromCol,
+        this.fromCol + this.cols);
+  }
+}
+
+
+//runs one phase of generation (placing or counting) over a range of stripes,
+//splitting the range in half until a single stripe is left
+class StripeTask extends RecursiveAction {
+
+  private static final long serialVersionUID = 1L;
+
+  ArrayList<Stripe> stripes;
+  int from;
+  int to;
+  boolean placing;
+
+
+  //constructor of StripeTask
+  StripeTask(ArrayList<Stripe> stripes, int from, int to, boolean placing) {
+    this.stripes = stripes;
+    this.from = from;
+    this.to = to;
+    this.placing = placing;
+  }
+
+
+  //EFFECT: run the phase on every stripe of the range
+  protected void compute() {
+    if (this.to - this.from <= 1) {
+      for (int i = this.from; i < this.to; i += 1) {
+        if (this.placing) {
+          this.stripes.get(i).placeMines();
+        }
+        else {
+          this.stripes.get(i).count();
+        }
+      }
+      return;
+    }
+    int mid = (this.from + this.to) >>> 1;
+    invokeAll(new StripeTask(this.stripes, this.from, mid, this.placing),
+        new StripeTask(this.stripes, mid, this.to, this.placing));
+  }
+}
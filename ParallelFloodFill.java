@@ -0,0 +1,136 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+//spreads a reveal over several cores, one breadth-first level at a time:
+//the cells of the current frontier are split between fork/join tasks
+//(idle workers steal the unfinished halves), and a task claims a
+//neighbour by atomically setting its revealed bit in the board's state,
+//so every cell is revealed by exactly one task and the revealed set is
+//the same as the one FloodFill finds on its own
+class ParallelFloodFill {
+
+  static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(byte[].class);
+  //frontier cells one task handles without splitting further
+  static final int LEAF = 1024;
+
+  Board board;
+  ForkJoinPool pool;
+
+
+  //constructor of ParallelFloodFill revealing cells of the given board
+  ParallelFloodFill(Board board, ForkJoinPool pool) {
+    this.board = board;
+    this.pool = pool;
+  }
+
+
+  //EFFECT: reveal outwards from the given revealed cells without adjacent
+  //mines (the first size entries of frontier), level by level, and
+  //return how many cells were newly revealed
+  public int spread(int[] frontier, int size) {
+    int revealed = 0;
+    IntStack current = new IntStack(size);
+    System.arraycopy(frontier, 0, current.items, 0, size);
+    current.size = size;
+    while (!current.isEmpty()) {
+      FrontierResult level = this.pool.invoke(new FrontierTask(this, current, 0, current.size));
+      revealed += level.claimed.size;
+      this.board.safeHidden -= level.claimed.size;
+      if (this.board.journal != null) {
+        this.board.journal.addAll(level.claimed);
+      }
+      if (this.board.changed != null) {
+        this.board.changed.addAll(level.claimed);
+      }
+      current = level.next;
+    }
+    return revealed;
+  }
+
+
+  //EFFECT: reveal the cell at the given index unless it is a mine,
+  //flagged or already revealed; return whether this call revealed it
+  boolean claim(byte[] state, int idx) {
+    while (true) {
+      byte s = (byte) CELLS.getVolatile(state, idx);
+      if ((s & FloodFill.BLOCKED) != 0) {
+        return false;
+      }
+      if (CELLS.compareAndSet(state, idx, s, (byte) (s | Board.REVEALED))) {
+        return true;
+      }
+    }
+  }
+}
+
+
+//the cells one part of a level revealed, and those among them
+//without adjacent mines (the next level)
+class FrontierResult {
+
+  IntStack claimed;
+  IntStack next;
+
+
+  //constructor of FrontierResult
+  FrontierResult(IntStack claimed, IntStack next) {
+    this.claimed = claimed;
+    this.next = next;
+  }
+}
+
+
+//expands the frontier cells from to to (exclusive) of one level
+class FrontierTask extends RecursiveTask<FrontierResult> {
+
+  private static final long serialVersionUID = 1L;
+
+  ParallelFloodFill fill;
+  IntStack frontier;
+  int from;
+  int to;
+
+
+  //constructor of FrontierTask
+  FrontierTask(ParallelFloodFill fill, IntStack frontier, int from, int to) {
+    this.fill = fill;
+    this.frontier = frontier;
+    this.from = from;
+    this.to = to;
+  }
+
+
+  //expand the range, splitting it in half while it is larger than a leaf
+  protected FrontierResult compute() {
+    if (this.to - this.from > ParallelFloodFill.LEAF) {
+      int mid = (this.from + this.to) >>> 1;
+      FrontierTask right = new FrontierTask(this.fill, this.frontier, mid, this.to);
+      right.fork();
+      FrontierResult left = new FrontierTask(this.fill, this.frontier, this.from, mid).compute();
+      FrontierResult other = right.join();
+      left.claimed.addAll(other.claimed);
+      left.next.addAll(other.next);
+      return left;
+    }
+    Board board = this.fill.board;
+    byte[] state = board.state;
+    int[] around = new int[board.topology.maxDegree()];
+    IntStack claimed = new IntStack(64);
+    IntStack next = new IntStack(64);
+    for (int i = this.from; i < this.to; i += 1) {
+      int n = board.topology.neighbours(this.frontier.items[i], around);
+      for (int k = 0; k < n; k += 1) {
+        int cell = around[k];
+        if (this.fill.claim(state, cell)) {
+          claimed.push(cell);
+          if ((state[cell] & Board.COUNT_MASK) == 0) {
+            next.push(cell);
+          }
+        }
+      }
+    }
+    return new FrontierResult(claimed, next);
+  }
+}
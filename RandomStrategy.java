@@ -0,0 +1,36 @@
+import java.util.SplittableRandom;
+
+//plays by revealing a random hidden cell every move, a baseline for
+//the other strategies; the choices are drawn from the game's seed
+class RandomStrategy extends AStrategy {
+
+  SplittableRandom rand;
+
+
+  //EFFECT: draw the choices of this game from its seed
+  public void start(MineSweeperEngine engine, int game, long seed) {
+    this.rand = new SplittableRandom(seed);
+  }
+
+
+  //EFFECT: reveal a random hidden cell without a flag
+  public int step(MineSweeperEngine engine) {
+    Board b = engine.board;
+    int n = b.size();
+    for (int tries = 0; tries < 64; tries += 1) {
+      int idx = this.rand.nextInt(n);
+      if (!b.isRevealed(idx) && !b.isFlagged(idx)) {
+        return engine.play(idx, MineSweeperEngine.REVEAL);
+      }
+    }
+    //few cells are left, look for one from a random place
+    int from = this.rand.nextInt(n);
+    for (int k = 0; k < n; k += 1) {
+      int idx = (from + k) % n;
+      if (!b.isRevealed(idx) && !b.isFlagged(idx)) {
+        return engine.play(idx, MineSweeperEngine.REVEAL);
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,179 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+//plays the moves of a MoveLog on the board built from its seed, without
+//drawing anything; every `every` moves a copy of the board is kept as a
+//checkpoint, so seeking to a move only replays the moves after the
+//closest checkpoint before it (each checkpoint costs a byte per cell)
+class Replay {
+
+  MoveLog log;
+  MineSweeperEngine engine;
+  int every;
+  //the number of moves played so far, and where the next one starts in the log
+  int position;
+  int offset;
+  int tick;
+  int[] cursor;
+  //checkpoints.get(k) is the game after k * every moves
+  ArrayList<Checkpoint> checkpoints;
+
+
+  //constructor of Replay at the start of the given log,
+  //keeping a checkpoint every `every` moves
+  Replay(MoveLog log, int every) {
+    if (every <= 0) {
+      throw new IllegalArgumentException("Checkpoints must be at least 1 move apart");
+    }
+    this.log = log;
+    this.engine = new MineSweeperEngine(log.rows, log.cols, log.mines, log.seed,
+        new ParallelBoardGenerator());
+    this.engine.protectFirstClick(log.firstClick);
+    if (log.undos > 0) {
+      this.engine.keepUndo(Integer.MAX_VALUE);
+    }
+    this.every = every;
+    this.cursor = new int[1];
+    this.checkpoints = new ArrayList<Checkpoint>();
+    this.checkpoints.add(this.checkpoint());
+  }
+
+
+  //check if there are moves left to play
+  public boolean hasNext() {
+    return this.position < this.log.moves;
+  }
+
+
+  //EFFECT: play the next move of the log, return how many cells it revealed
+  public int step() {
+    this.cursor[0] = this.offset;
+    int x = this.log.getVarint(this.cursor);
+    int y = this.log.getVarint(this.cursor);
+    int move = this.log.getVarint(this.cursor);
+    this.tick += this.log.getVarint(this.cursor);
+    this.offset = this.cursor[0];
+    int revealed = this.engine.play(this.engine.indexOf(x, y), move);
+    this.position += 1;
+    if (this.position % this.every == 0 && this.position / this.every == this.checkpoints.size()) {
+      this.checkpoints.add(this.checkpoint());
+    }
+    return revealed;
+  }
+
+
+  //EFFECT: play every move left in the log
+  public void runToEnd() {
+    while (this.hasNext()) {
+      this.step();
+    }
+  }
+
+
+  //EFFECT: bring the game to how it was after the given number of moves
+  //(clamped to the moves in the log), going back to a checkpoint when
+  //that is closer than playing on from here
+  public void seek(int moves) {
+    int target = Math.max(0, Math.min(moves, this.log.moves));
+    int k = Math.min(target / this.every, this.checkpoints.size() - 1);
+    if (target < this.position || k * this.every > this.position) {
+      this.restore(this.checkpoints.get(k));
+      this.position = k * this.every;
+    }
+    while (this.position < target) {
+      this.step();
+    }
+  }
+
+
+  //a copy of the game as it is now
+  Checkpoint checkpoint() {
+    Board b = this.engine.board;
+    Checkpoint c = new Checkpoint(b.state.clone(), b.safeHidden, b.minesRevealed, b.flagCount,
+        this.offset, this.tick);
+    if (this.engine.journal != null) {
+      c.journal = this.engine.journal.copy(b);
+    }
+    c.rand = Checkpoint.copyOf(this.engine.rand);
+    return c;
+  }
+
+
+  //EFFECT: put the game back as it was when the given checkpoint was taken
+  void restore(Checkpoint c) {
+    Board b = this.engine.board;
+    System.arraycopy(c.state, 0, b.state, 0, b.state.length);
+    b.safeHidden = c.safeHidden;
+    b.minesRevealed = c.minesRevealed;
+    b.flagCount = c.flagCount;
+    if (b.changed != null) {
+      b.changed.clear();
+    }
+    this.offset = c.offset;
+    this.tick = c.tick;
+    if (c.journal != null) {
+      this.engine.journal = c.journal.copy(b);
+    }
+    this.engine.rand = Checkpoint.copyOf(c.rand);
+  }
+}
+
+
+//represents a game kept by a Replay: the cells, the running totals,
+//where in the log the next move starts, the moves that could be
+//undone (only when the log has undos), and the engine's Random, so a
+//protected first click played again moves its mines the same way
+class Checkpoint {
+
+  byte[] state;
+  int safeHidden;
+  int minesRevealed;
+  int flagCount;
+  int offset;
+  int tick;
+  UndoJournal journal;
+  //null when the engine had not made its Random yet
+  Random rand;
+
+
+  //constructor of Checkpoint
+  Checkpoint(byte[] state, int safeHidden, int minesRevealed, int flagCount,
+      int offset, int tick) {
+    this.state = state;
+    this.safeHidden = safeHidden;
+    this.minesRevealed = minesRevealed;
+    this.flagCount = flagCount;
+    this.offset = offset;
+    this.tick = tick;
+  }
+
+
+  //a copy of the given Random that draws the same numbers from here on
+  //(Random cannot be copied other than through serialization), or null
+  static Random copyOf(Random rand) {
+    if (rand == null) {
+      return null;
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(rand);
+      out.close();
+      ObjectInputStream in = new ObjectInputStream(
+          new ByteArrayInputStream(bytes.toByteArray()));
+      return (Random) in.readObject();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    catch (ClassNotFoundException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,245 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+//a saved game: a fixed header, then a bitmap with one bit per cell for
+//the mines, then two bits per cell for revealed and flagged; cells are in
+//board index order, so every column is a contiguous run of bits and a
+//range of columns can be read without touching the rest of the file
+//
+//header (big-endian, HEADER_BYTES long):
+//  int magic, short version, short topology, int rows, int cols,
+//  long seed, int mines, int safeHidden, int minesRevealed, int flagCount
+//
+//files are written and read through a memory mapping, so no object is
+//made per cell; opening a file only reads its header, columns are decoded
+//when loadColumns asks for them (a torus or hex board is decoded at once,
+//its neighbours are not confined to the columns next door)
+class SaveFile {
+
+  static final int MAGIC = 0x4D535750;
+  static final short VERSION = 1;
+  static final int HEADER_BYTES = 40;
+
+  static final short GRID = 0;
+  static final short TORUS = 1;
+  static final short HEX = 2;
+
+  MappedByteBuffer buffer;
+  int version;
+  int topology;
+  int rows;
+  int cols;
+  long seed;
+  int numMines;
+  int safeHidden;
+  int minesRevealed;
+  int flagCount;
+  //the board being filled in, with which columns hold their cells
+  //and which have their adjacency counts
+  Board board;
+  boolean[] decoded;
+  boolean[] counted;
+  //the totals of the columns decoded so far
+  int minesSeen;
+  int safeHiddenSeen;
+  int minesRevealedSeen;
+  int flagsSeen;
+
+
+  //constructor of SaveFile opening the given file and reading its header
+  SaveFile(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES) {
+        throw new IOException("Not a MineSweeper save file: " + file);
+      }
+      this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (this.buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a MineSweeper save file: " + file);
+    }
+    this.version = this.buffer.getShort(4);
+    if (this.version != VERSION) {
+      throw new IOException("Unsupported save file version " + this.version);
+    }
+    this.topology = this.buffer.getShort(6);
+    this.rows = this.buffer.getInt(8);
+    this.cols = this.buffer.getInt(12);
+    this.seed = this.buffer.getLong(16);
+    this.numMines = this.buffer.getInt(24);
+    this.safeHidden = this.buffer.getInt(28);
+    this.minesRevealed = this.buffer.getInt(32);
+    this.flagCount = this.buffer.getInt(36);
+    long cells = (long) this.rows * this.cols;
+    if (this.rows <= 0 || this.cols <= 0 || cells > Integer.MAX_VALUE
+        || this.buffer.capacity() != fileSize((int) cells)) {
+      throw new IOException("Save file is damaged or truncated: " + file);
+    }
+
+    this.board = new Board(topologyOf(this.topology, this.rows, this.cols));
+    this.board.safeHidden = this.safeHidden;
+    this.board.minesRevealed = this.minesRevealed;
+    this.board.flagCount = this.flagCount;
+    this.decoded = new boolean[this.cols];
+    this.counted = new boolean[this.cols];
+    if (!(this.board.topology instanceof GridTopology)) {
+      this.decode(0, this.cols);
+      this.board.topology.recount(this.board);
+      Arrays.fill(this.counted, true);
+    }
+  }
+
+
+  //the number of bytes of a save file for a board with the given number of cells
+  static long fileSize(int cells) {
+    return HEADER_BYTES + mineBytes(cells) + (cells + 3L) / 4;
+  }
+
+
+  //the number of bytes of the mine bitmap for the given number of cells
+  static long mineBytes(int cells) {
+    return (cells + 7L) / 8;
+  }
+
+
+  //the topology saved under the given code
+  static ITopology topologyOf(int code, int rows, int cols) throws IOException {
+    if (code == GRID) {
+      return new GridTopology(rows, cols);
+    }
+    if (code == TORUS) {
+      return new TorusTopology(rows, cols);
+    }
+    if (code == HEX) {
+      return new HexTopology(rows, cols);
+    }
+    throw new IOException("Unknown topology " + code + " in save file");
+  }
+
+
+  //the code the given topology is saved under
+  static short codeOf(ITopology topology) {
+    if (topology instanceof TorusTopology) {
+      return TORUS;
+    }
+    if (topology instanceof HexTopology) {
+      return HEX;
+    }
+    if (topology instanceof GridTopology) {
+      return GRID;
+    }
+    throw new IllegalArgumentException("Cannot save a board with topology "
+        + topology.getClass().getName());
+  }
+
+
+  //EFFECT: write the game played by the given engine to the given file,
+  //replacing anything that was there
+  static void save(MineSweeperEngine engine, Path file) throws IOException {
+    Board b = engine.board;
+    int n = b.size();
+    long mineBase = HEADER_BYTES;
+    long playBase = mineBase + mineBytes(n);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(n));
+      out.putInt(0, MAGIC);
+      out.putShort(4, VERSION);
+      out.putShort(6, codeOf(b.topology));
+      out.putInt(8, b.numRows);
+      out.putInt(12, b.numCols);
+      out.putLong(16, engine.seed);
+      out.putInt(24, engine.numMines);
+      out.putInt(28, b.safeHidden);
+      out.putInt(32, b.minesRevealed);
+      out.putInt(36, b.flagCount);
+      for (int i = 0; i < n; i += 8) {
+        int bits = 0;
+        for (int k = 0; k < 8 && i + k < n; k += 1) {
+          bits |= ((b.state[i + k] & Board.MINE) >> 4) << k;
+        }
+        out.put((int) (mineBase + (i >> 3)), (byte) bits);
+      }
+      for (int i = 0; i < n; i += 4) {
+        int bits = 0;
+        for (int k = 0; k < 4 && i + k < n; k += 1) {
+          bits |= ((b.state[i + k] & (Board.REVEALED | Board.FLAGGED)) >> 5) << (k * 2);
+        }
+        out.put((int) (playBase + (i >> 2)), (byte) bits);
+      }
+      out.force();
+    }
+  }
+
+
+  //EFFECT: decode the whole file, return an engine playing the saved game
+  //(throws if the counters in the header do not match the cells)
+  public MineSweeperEngine load() throws IOException {
+    this.loadColumns(0, this.cols);
+    if (this.safeHiddenSeen != this.safeHidden || this.minesRevealedSeen != this.minesRevealed
+        || this.flagsSeen != this.flagCount || this.minesSeen != this.numMines) {
+      throw new IOException("Save file counters do not match its cells");
+    }
+    MineSweeperEngine engine = new MineSweeperEngine(this.board, this.numMines);
+    engine.seed = this.seed;
+    return engine;
+  }
+
+
+  //EFFECT: make the cells and adjacency counts of the columns from
+  //fromCol (inclusive) to toCol (exclusive) of the board available,
+  //decoding the columns on either side for their mines
+  public void loadColumns(int fromCol, int toCol) {
+    int from = Math.max(0, fromCol);
+    int to = Math.min(this.cols, toCol);
+    this.decode(from - 1, to + 1);
+    for (int col = from; col < to; col += 1) {
+      if (!this.counted[col]) {
+        GridTopology grid = (GridTopology) this.board.topology;
+        int end = col;
+        while (end < to && !this.counted[end]) {
+          this.counted[end] = true;
+          end += 1;
+        }
+        grid.recountColumns(this.board.state, col, end);
+        col = end - 1;
+      }
+    }
+  }
+
+
+  //EFFECT: copy the mine, revealed and flagged bits of the columns from
+  //fromCol (inclusive) to toCol (exclusive) into the board, skipping
+  //columns that were decoded before, and add them to the tallies
+  void decode(int fromCol, int toCol) {
+    int playBase = HEADER_BYTES + (int) mineBytes(this.board.size());
+    byte[] mines = new byte[this.rows / 8 + 2];
+    byte[] play = new byte[this.rows / 4 + 2];
+    byte[] state = this.board.state;
+    for (int col = Math.max(0, fromCol); col < Math.min(this.cols, toCol); col += 1) {
+      if (this.decoded[col]) {
+        continue;
+      }
+      this.decoded[col] = true;
+      int start = col * this.rows;
+      int end = start + this.rows;
+      int mineFrom = start >> 3;
+      int playFrom = start >> 2;
+      this.buffer.get(HEADER_BYTES + mineFrom, mines, 0, ((end + 7) >> 3) - mineFrom);
+      this.buffer.get(playBase + playFrom, play, 0, ((end + 3) >> 2) - playFrom);
+      for (int i = start; i < end; i += 1) {
+        int mine = (mines[(i >> 3) - mineFrom] >> (i & 7)) & 1;
+        int bits = (play[(i >> 2) - playFrom] >> ((i & 3) * 2)) & 3;
+        state[i] = (byte) ((mine << 4) | (bits << 5));
+        this.minesSeen += mine;
+        this.safeHiddenSeen += 1 - (mine | (bits & 1));
+        this.minesRevealedSeen += mine & bits;
+        this.flagsSeen += bits >> 1;
+      }
+    }
+  }
+}
@@ -0,0 +1,326 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+//plays many seeded games without drawing them, for tuning how hard
+//boards are: the games are split over a work-stealing pool, every thread
+//playing them keeps one engine (and so one board array) and one strategy
+//for the run and plays game after game on them, and every finished game
+//is only added to the running totals in stats, so memory does not grow
+//with the games;
+//game i is built from a seed mixed from the simulation's seed and i, so
+//the totals are the same on any number of threads
+class Simulation {
+
+  //how many games one task plays before it is not split any further
+  static final int GRAIN = 8;
+
+  int rows;
+  int cols;
+  int mines;
+  long seed;
+  int firstClick;
+  ForkJoinPool pool;
+  Supplier<IStrategy> strategies;
+  SimStats stats;
+  //stats is handed to progress every reportEvery games (0 for never)
+  Consumer<SimStats> progress;
+  int reportEvery;
+  AtomicLong done;
+  //the worker of each thread playing games in the current run, dropped
+  //when it ends so the engines and boards do not outlive it
+  ConcurrentHashMap<Thread, SimWorker> workers;
+  long lastNanos;
+
+
+  //constructor of Simulation of games on boards of the given size, each
+  //played by a strategy from the given supplier, on the given pool
+  Simulation(int rows, int cols, int mines, long seed, Supplier<IStrategy> strategies,
+      ForkJoinPool pool) {
+    if (mines < 0 || mines > rows * cols) {
+      throw new IllegalArgumentException("Cannot place " + mines + " mines on "
+          + rows * cols + " cells");
+    }
+    this.rows = rows;
+    this.cols = cols;
+    this.mines = mines;
+    this.seed = seed;
+    this.strategies = strategies;
+    this.pool = pool;
+    this.stats = new SimStats();
+    this.done = new AtomicLong();
+    this.workers = new ConcurrentHashMap<Thread, SimWorker>();
+  }
+
+
+  //EFFECT: play the given number of games, adding them to stats, and
+  //return the stats
+  public SimStats run(int games) {
+    long start = System.nanoTime();
+    try {
+      this.pool.invoke(new SimTask(this, 0, games));
+    }
+    finally {
+      this.workers.clear();
+    }
+    this.lastNanos = System.nanoTime() - start;
+    return this.stats;
+  }
+
+
+  //the number of games played per second by the last run
+  public double gamesPerSecond(int games) {
+    return games / (this.lastNanos / 1e9);
+  }
+
+
+  //the seed game number game of a simulation with the given seed is built from
+  static long seedOf(long seed, int game) {
+    return new SplittableRandom(seed ^ (0x9E3779B97F4A7C15L * (game + 1))).nextLong();
+  }
+
+
+  //EFFECT: play the given game on the worker of the thread running it
+  void play(int game) {
+    Thread thread = Thread.currentThread();
+    SimWorker worker = this.workers.get(thread);
+    if (worker == null) {
+      worker = new SimWorker(this);
+      this.workers.put(thread, worker);
+    }
+    worker.play(game);
+    long finished = this.done.incrementAndGet();
+    if (this.progress != null && this.reportEvery > 0 && finished % this.reportEvery == 0) {
+      this.progress.accept(this.stats);
+    }
+  }
+
+
+  //runs a Simulation from the command line with key=value arguments:
+  //rows, cols, mines, games, seed, threads, every (games between
+  //progress lines) and strategy (random or solver)
+  public static void main(String[] args) {
+    int rows = 16;
+    int cols = 30;
+    int mines = 99;
+    int games = 10000;
+    long seed = 42;
+    int threads = Runtime.getRuntime().availableProcessors();
+    int every = 0;
+    String strategy = "solver";
+    for (String arg : args) {
+      String[] kv = arg.split("=", 2);
+      if (kv.length != 2) {
+        throw new IllegalArgumentException("Expected key=value but got " + arg);
+      }
+      if (kv[0].equals("rows")) {
+        rows = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("cols")) {
+        cols = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("mines")) {
+        mines = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("games")) {
+        games = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("seed")) {
+        seed = Long.parseLong(kv[1]);
+      }
+      else if (kv[0].equals("threads")) {
+        threads = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("every")) {
+        every = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("strategy")) {
+        strategy = kv[1];
+      }
+      else {
+        throw new IllegalArgumentException("Unknown simulation option " + kv[0]);
+      }
+    }
+    Supplier<IStrategy> strategies;
+    if (strategy.equals("random")) {
+      strategies = RandomStrategy::new;
+    }
+    else if (strategy.equals("solver")) {
+      strategies = SolverStrategy::new;
+    }
+    else {
+      throw new IllegalArgumentException("Unknown strategy " + strategy);
+    }
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    Simulation sim = new Simulation(rows, cols, mines, seed, strategies, pool);
+    sim.reportEvery = every;
+    sim.progress = s -> System.out.println(s.summary());
+    SimStats stats = sim.run(games);
+    System.out.println(stats.summary());
+    System.out.println(String.format("%.1f games/s on %d threads", sim.gamesPerSecond(games),
+        threads));
+    pool.shutdown();
+  }
+}
+
+
+//the engine, strategy and buffers one thread of a Simulation plays on
+//(BoardAnalytics gives each game's 3BV)
+class SimWorker {
+
+  Simulation sim;
+  ParallelBoardGenerator generator;
+  MineSweeperEngine engine;
+  IStrategy strategy;
+  BoardAnalytics analytics;
+
+
+  //constructor of SimWorker for the given simulation
+  SimWorker(Simulation sim) {
+    this.sim = sim;
+    this.generator = new ParallelBoardGenerator(sim.pool);
+    this.strategy = sim.strategies.get();
+    this.analytics = new BoardAnalytics(8);
+  }
+
+
+  //EFFECT: play the given game and add it to the simulation's stats
+  void play(int game) {
+    long seed = this.strategy.seedFor(game, Simulation.seedOf(this.sim.seed, game));
+    if (this.engine == null) {
+      this.engine = new MineSweeperEngine(this.sim.rows, this.sim.cols, this.sim.mines, seed,
+          this.generator);
+    }
+    else {
+      this.engine.restart(seed, this.generator);
+    }
+    this.engine.protectFirstClick(this.sim.firstClick);
+    this.strategy.start(this.engine, game, seed);
+    SimStats stats = this.sim.stats;
+    int bv = this.analytics.measure(this.engine.board).threeBV;
+    int maxClicks = 2 * this.engine.board.size() + 16;
+    int clicks = 0;
+    while (!this.engine.isOver() && clicks < maxClicks) {
+      int revealed = this.strategy.step(this.engine);
+      if (revealed < 0) {
+        break;
+      }
+      clicks += 1;
+      stats.reveal(revealed);
+    }
+    stats.finish(this.engine.won(), clicks, bv);
+  }
+}
+
+
+//the running totals of the games of a Simulation, updated by every
+//worker without locks and readable while the games are still running
+class SimStats {
+
+  LongAdder games;
+  LongAdder wins;
+  LongAdder clicks;
+  LongAdder threeBV;
+  LongAdder wonThreeBV;
+  LongAdder revealed;
+  //revealSizes[k] counts the clicks that revealed from 2^(k - 1) to
+  //2^k - 1 cells (k = 0 for none)
+  AtomicLongArray revealSizes;
+
+
+  //constructor of empty SimStats
+  SimStats() {
+    this.games = new LongAdder();
+    this.wins = new LongAdder();
+    this.clicks = new LongAdder();
+    this.threeBV = new LongAdder();
+    this.wonThreeBV = new LongAdder();
+    this.revealed = new LongAdder();
+    this.revealSizes = new AtomicLongArray(33);
+  }
+
+
+  //EFFECT: count a click that revealed the given number of cells
+  void reveal(int cells) {
+    this.revealed.add(cells);
+    this.revealSizes.incrementAndGet(32 - Integer.numberOfLeadingZeros(cells));
+  }
+
+
+  //EFFECT: count a finished game
+  void finish(boolean won, int clicks, int bv) {
+    this.games.increment();
+    this.clicks.add(clicks);
+    this.threeBV.add(bv);
+    if (won) {
+      this.wins.increment();
+      this.wonThreeBV.add(bv);
+    }
+  }
+
+
+  //the share of the games that were won
+  public double winRate() {
+    long n = this.games.sum();
+    return n == 0 ? 0 : (double) this.wins.sum() / n;
+  }
+
+
+  //one line describing the games so far
+  public String summary() {
+    long n = Math.max(1, this.games.sum());
+    long c = Math.max(1, this.clicks.sum());
+    StringBuilder sizes = new StringBuilder();
+    for (int k = 0; k < this.revealSizes.length(); k += 1) {
+      long count = this.revealSizes.get(k);
+      if (count > 0) {
+        sizes.append(' ').append(k == 0 ? 0 : 1 << (k - 1)).append('+').append(':')
+            .append(count);
+      }
+    }
+    return String.format("%d games, %.2f%% won, %.1f clicks, %.1f 3BV (%.1f when won),"
+        + " %.1f cells per click; reveal sizes%s", this.games.sum(), 100 * this.winRate(),
+        (double) this.clicks.sum() / n, (double) this.threeBV.sum() / n,
+        (double) this.wonThreeBV.sum() / Math.max(1, this.wins.sum()),
+        (double) this.revealed.sum() / c, sizes);
+  }
+}
+
+
+//plays a range of the games of a Simulation, splitting the range in half
+//until it holds at most Simulation.GRAIN games
+class SimTask extends RecursiveAction {
+
+  private static final long serialVersionUID = 1L;
+
+  Simulation sim;
+  int from;
+  int to;
+
+
+  //constructor of SimTask
+  SimTask(Simulation sim, int from, int to) {
+    this.sim = sim;
+    this.from = from;
+    this.to = to;
+  }
+
+
+  //EFFECT: play every game of the range
+  protected void compute() {
+    if (this.to - this.from <= Simulation.GRAIN) {
+      for (int i = this.from; i < this.to; i += 1) {
+        this.sim.play(i);
+      }
+      return;
+    }
+    int mid = (this.from + this.to) >>> 1;
+    invokeAll(new SimTask(this.sim, this.from, mid), new SimTask(this.sim, mid, this.to));
+  }
+}
@@ -0,0 +1,730 @@
+import java.util.Arrays;
+
+//works out which hidden cells of an engine's board are safe or mines from
+//the revealed numbers alone (flags are the player's guesses, so they are
+//not trusted), in three steps of growing cost, each only run when the
+//cheaper ones find nothing:
+//  single: a number whose mines are all known, or whose hidden cells
+//          must all be mines
+//  pairs:  two numbers sharing hidden cells, where the difference of their
+//          counts pins down the cells only one of them touches
+//  search: every assignment of the cells of one connected part of the
+//          frontier that fits all its numbers is tried; cells that are
+//          safe (or mines) in all of them are known
+//the solver follows the board through its journal, so after a move only
+//the numbers around the cells that changed are looked at again
+class Solver {
+
+  static final byte UNKNOWN = 0;
+  static final byte SAFE = 1;
+  static final byte MINE = 2;
+
+  MineSweeperEngine engine;
+  Board board;
+  //what the solver knows of each cell
+  byte[] known;
+  //cells the board reported revealed, hidden or flagged since the last look
+  IntStack fresh;
+  //numbers to check again with the single and the pair rule
+  IntStack dirty;
+  boolean[] queued;
+  IntStack pairDirty;
+  boolean[] pairQueued;
+  //numbers that had hidden unknown neighbours when last checked
+  IntStack frontier;
+  boolean[] inFrontier;
+  //numbers whose part of the frontier was searched without deciding
+  //anything and has not changed since, so it is not searched again
+  boolean[] settled;
+  //hidden cells known to be safe, not yet handed out
+  IntStack safe;
+  int[] around;
+  int[] aroundA;
+  int[] aroundB;
+  int[] aroundX;
+  //the most assignments one part of the frontier may take to search
+  int maxNodes;
+  //stamps marking what one search has visited, and each cell's variable
+  int stamp;
+  int[] seen;
+  int[] slot;
+  //the search of one part, kept with its arrays from part to part
+  FrontierSearch parts;
+
+  //how the last decision was made, and totals over every decision
+  String lastRule;
+  long lastNodes;
+  long lastNanos;
+  int decisions;
+  long totalNodes;
+  long totalNanos;
+
+
+  //constructor of Solver following the board of the given engine
+  Solver(MineSweeperEngine engine) {
+    this.engine = engine;
+    this.board = engine.board;
+    int n = this.board.size();
+    int degree = this.board.topology.maxDegree();
+    this.known = new byte[n];
+    this.fresh = new IntStack(64);
+    this.dirty = new IntStack(64);
+    this.queued = new boolean[n];
+    this.pairDirty = new IntStack(64);
+    this.pairQueued = new boolean[n];
+    this.frontier = new IntStack(64);
+    this.inFrontier = new boolean[n];
+    this.settled = new boolean[n];
+    this.safe = new IntStack(64);
+    this.around = new int[degree];
+    this.aroundA = new int[degree];
+    this.aroundB = new int[degree];
+    this.aroundX = new int[degree];
+    this.maxNodes = 1 << 20;
+    this.seen = new int[n];
+    this.slot = new int[n];
+    this.parts = new FrontierSearch(this);
+    this.lastRule = "none";
+    this.attach();
+  }
+
+
+  //EFFECT: follow the moves made on the board from now on, starting
+  //afresh from what it shows; a board is followed by one solver at a time
+  //(attaching takes the board over from any other)
+  public void attach() {
+    this.board.journal = this.fresh;
+    this.reset();
+  }
+
+
+  //EFFECT: stop following the board, so the moves made on it are no
+  //longer kept for this solver; not to be called during a move
+  public void detach() {
+    if (this.board.journal == this.fresh) {
+      this.board.journal = null;
+    }
+    this.fresh.clear();
+  }
+
+
+  //EFFECT: forget everything worked out and start again from the board
+  public void reset() {
+    Arrays.fill(this.known, UNKNOWN);
+    Arrays.fill(this.queued, false);
+    Arrays.fill(this.pairQueued, false);
+    Arrays.fill(this.inFrontier, false);
+    Arrays.fill(this.settled, false);
+    this.fresh.clear();
+    this.dirty.clear();
+    this.pairDirty.clear();
+    this.frontier.clear();
+    this.safe.clear();
+    for (int i = 0; i < this.board.size(); i += 1) {
+      if (this.board.isRevealed(i)) {
+        this.known[i] = this.board.isMine(i) ? MINE : SAFE;
+        this.enqueue(i);
+      }
+    }
+  }
+
+
+  //hidden cells that are certainly safe, working out more when none are
+  //known yet; empty when the revealed numbers do not decide any cell
+  public int[] nextSafeMoves() {
+    long start = System.nanoTime();
+    this.lastNodes = 0;
+    this.lastRule = "known";
+    this.sync();
+    int kept = 0;
+    for (int i = 0; i < this.safe.size; i += 1) {
+      if (!this.board.isRevealed(this.safe.items[i])) {
+        this.safe.items[kept] = this.safe.items[i];
+        kept += 1;
+      }
+    }
+    this.safe.size = kept;
+    while (this.safe.isEmpty()) {
+      if (!this.dirty.isEmpty()) {
+        this.lastRule = "single";
+        this.single();
+      }
+      else if (this.pairs()) {
+        this.lastRule = "pairs";
+      }
+      else if (this.search()) {
+        this.lastRule = "search";
+      }
+      else {
+        this.lastRule = "stuck";
+        break;
+      }
+    }
+    this.lastNanos = System.nanoTime() - start;
+    this.decisions += 1;
+    this.totalNodes += this.lastNodes;
+    this.totalNanos += this.lastNanos;
+    return Arrays.copyOf(this.safe.items, this.safe.size);
+  }
+
+
+  //EFFECT: reveal safe cells until the game is won, lost, or no cell is
+  //certainly safe; return how many cells were clicked
+  public int solveFully() {
+    int clicks = 0;
+    while (!this.engine.isOver()) {
+      int[] next = this.nextSafeMoves();
+      if (next.length == 0) {
+        break;
+      }
+      for (int idx : next) {
+        if (!this.board.isRevealed(idx)) {
+          this.engine.play(idx, MineSweeperEngine.REVEAL);
+          clicks += 1;
+        }
+      }
+    }
+    return clicks;
+  }
+
+
+  //check if the cell at the given index is known to be a mine
+  public boolean isKnownMine(int idx) {
+    return this.known[idx] == MINE;
+  }
+
+
+  //check if the cell at the given index is known to be safe
+  public boolean isKnownSafe(int idx) {
+    return this.known[idx] == SAFE;
+  }
+
+
+  //a line describing the last decision and the totals so far
+  public String report() {
+    return String.format("%s: %d nodes, %.3f ms (%d decisions, %d nodes, %.3f ms in all)",
+        this.lastRule, this.lastNodes, this.lastNanos / 1e6, this.decisions,
+        this.totalNodes, this.totalNanos / 1e6);
+  }
+
+
+  //EFFECT: take in the cells the board reported changed since the last look
+  void sync() {
+    while (!this.fresh.isEmpty()) {
+      int idx = this.fresh.pop();
+      if (idx < 0) {
+        continue;
+      }
+      if (!this.board.isRevealed(idx)) {
+        //a move was undone, what was worked out from it no longer holds
+        this.reset();
+        return;
+      }
+      this.known[idx] = this.board.isMine(idx) ? MINE : SAFE;
+      this.enqueue(idx);
+      this.touch(idx);
+    }
+  }
+
+
+  //EFFECT: have the given number checked again by both rules, and its
+  //part of the frontier searched again
+  void enqueue(int idx) {
+    this.settled[idx] = false;
+    if (!this.queued[idx]) {
+      this.queued[idx] = true;
+      this.dirty.push(idx);
+    }
+    if (!this.pairQueued[idx]) {
+      this.pairQueued[idx] = true;
+      this.pairDirty.push(idx);
+    }
+  }
+
+
+  //EFFECT: have the numbers around the given cell checked again
+  void touch(int idx) {
+    int n = this.board.neighbours(idx, this.around);
+    for (int k = 0; k < n; k += 1) {
+      if (this.board.isRevealed(this.around[k])) {
+        this.enqueue(this.around[k]);
+      }
+    }
+  }
+
+
+  //EFFECT: record that the hidden cell at idx is safe
+  void markSafe(int idx) {
+    if (this.known[idx] == UNKNOWN) {
+      this.known[idx] = SAFE;
+      this.safe.push(idx);
+      this.touch(idx);
+    }
+  }
+
+
+  //EFFECT: record that the hidden cell at idx is a mine
+  void markMine(int idx) {
+    if (this.known[idx] == UNKNOWN) {
+      this.known[idx] = MINE;
+      this.touch(idx);
+    }
+  }
+
+
+  //check if the cell at idx is a revealed number the rules can use
+  boolean isNumber(int idx) {
+    return this.board.isRevealed(idx) && !this.board.isMine(idx);
+  }
+
+
+  //EFFECT: write the neighbours of the number at idx that are hidden and
+  //not yet known into out, return how many there are
+  int unknowns(int idx, int[] out) {
+    int n = this.board.neighbours(idx, out);
+    int count = 0;
+    for (int k = 0; k < n; k += 1) {
+      int c = out[k];
+      if (this.known[c] == UNKNOWN && !this.board.isRevealed(c)) {
+        out[count] = c;
+        count += 1;
+      }
+    }
+    return count;
+  }
+
+
+  //the number of mines around the number at idx that are not known yet
+  int remaining(int idx) {
+    int n = this.board.neighbours(idx, this.aroundX);
+    int mines = this.board.adjacent(idx);
+    for (int k = 0; k < n; k += 1) {
+      if (this.known[this.aroundX[k]] == MINE) {
+        mines -= 1;
+      }
+    }
+    return mines;
+  }
+
+
+  //EFFECT: apply the single cell rule to every number waiting for it
+  void single() {
+    while (!this.dirty.isEmpty()) {
+      int c = this.dirty.pop();
+      this.queued[c] = false;
+      if (!this.isNumber(c)) {
+        continue;
+      }
+      int u = this.unknowns(c, this.aroundA);
+      if (u == 0) {
+        continue;
+      }
+      if (!this.inFrontier[c]) {
+        this.inFrontier[c] = true;
+        this.frontier.push(c);
+      }
+      int rem = this.remaining(c);
+      for (int k = 0; k < u; k += 1) {
+        if (rem == 0) {
+          this.markSafe(this.aroundA[k]);
+        }
+        else if (rem == u) {
+          this.markMine(this.aroundA[k]);
+        }
+      }
+    }
+  }
+
+
+  //EFFECT: apply the pair rule to the numbers waiting for it until one
+  //pair decides a cell; return whether one did
+  boolean pairs() {
+    while (!this.pairDirty.isEmpty()) {
+      int a = this.pairDirty.pop();
+      this.pairQueued[a] = false;
+      if (!this.isNumber(a)) {
+        continue;
+      }
+      int ua = this.unknowns(a, this.aroundA);
+      if (ua == 0) {
+        continue;
+      }
+      int ra = this.remaining(a);
+      for (int x = 0; x < ua; x += 1) {
+        int n = this.board.neighbours(this.aroundA[x], this.around);
+        for (int k = 0; k < n; k += 1) {
+          int b = this.around[k];
+          if (b != a && this.isNumber(b) && this.pair(a, ua, ra, b)) {
+            this.enqueue(a);
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+
+  //EFFECT: compare the number at a (whose ua unknown neighbours are in
+  //aroundA, with ra mines among them) with the number at b: when b needs
+  //as many more mines than a as it has cells a does not touch, those
+  //cells are mines and the cells only a touches are safe (and the other
+  //way around); return whether any cell was decided
+  boolean pair(int a, int ua, int ra, int b) {
+    int ub = this.unknowns(b, this.aroundB);
+    if (ub == 0) {
+      return false;
+    }
+    int rb = this.remaining(b);
+    int onlyA = ua - this.shared(this.aroundA, ua, this.aroundB, ub);
+    int onlyB = ub - (ua - onlyA);
+    if (onlyA + onlyB == 0) {
+      return false;
+    }
+    if (rb - ra == onlyB) {
+      this.settle(this.aroundB, ub, this.aroundA, ua, MINE);
+      this.settle(this.aroundA, ua, this.aroundB, ub, SAFE);
+      return true;
+    }
+    if (ra - rb == onlyA) {
+      this.settle(this.aroundA, ua, this.aroundB, ub, MINE);
+      this.settle(this.aroundB, ub, this.aroundA, ua, SAFE);
+      return true;
+    }
+    return false;
+  }
+
+
+  //the number of the first na cells of a that are among the first nb of b
+  int shared(int[] a, int na, int[] b, int nb) {
+    int count = 0;
+    for (int i = 0; i < na; i += 1) {
+      for (int j = 0; j < nb; j += 1) {
+        if (a[i] == b[j]) {
+          count += 1;
+        }
+      }
+    }
+    return count;
+  }
+
+
+  //EFFECT: mark the first na cells of a that are not among the
+  //first nb of b as what
+  void settle(int[] a, int na, int[] b, int nb, byte what) {
+    for (int i = 0; i < na; i += 1) {
+      if (this.shared(a, i + 1, b, nb) == this.shared(a, i, b, nb)) {
+        if (what == MINE) {
+          this.markMine(a[i]);
+        }
+        else {
+          this.markSafe(a[i]);
+        }
+      }
+    }
+  }
+
+
+  //EFFECT: search every connected part of the frontier that changed since
+  //it was last searched for cells that are the same in every assignment
+  //fitting its numbers, and record them; return whether any cell was decided
+  boolean search() {
+    boolean decided = false;
+    this.stamp += 1;
+    int kept = 0;
+    for (int i = 0; i < this.frontier.size; i += 1) {
+      int c = this.frontier.items[i];
+      if (this.isNumber(c) && this.unknowns(c, this.aroundA) > 0) {
+        this.frontier.items[kept] = c;
+        kept += 1;
+      }
+      else {
+        this.inFrontier[c] = false;
+      }
+    }
+    this.frontier.size = kept;
+    for (int i = 0; i < kept; i += 1) {
+      int c = this.frontier.items[i];
+      if (this.seen[c] != this.stamp) {
+        this.parts.load(c);
+        if (!this.parts.settled()) {
+          if (this.parts.run()) {
+            decided = true;
+          }
+          else {
+            this.parts.settle();
+          }
+        }
+      }
+    }
+    return decided;
+  }
+}
+
+
+//enumerates the assignments of the hidden cells of one connected part of
+//the frontier of a Solver, counting in how many of them each cell is a mine;
+//one search is kept by each solver and its arrays are reused part to part
+class FrontierSearch {
+
+  Solver solver;
+  //the hidden cells (variables) and numbers (constraints) of this part
+  IntStack cells;
+  IntStack numbers;
+  IntStack pending;
+  //the cells of number i are numberList[numberStart[i] .. numberStart[i + 1]),
+  //and the numbers of cell v are cellList[cellStart[v] .. cellStart[v + 1])
+  int[] numberStart;
+  int[] numberList;
+  int[] cellStart;
+  int[] cellList;
+  int[] needed;
+  //during the search: the value of each cell (-1 for not yet given), the
+  //values tried so far per cell, and per number the mines given so far
+  //and the cells still open
+  int[] value;
+  int[] tried;
+  int[] given;
+  int[] open;
+  long solutions;
+  long[] mineIn;
+  long nodes;
+
+
+  //constructor of FrontierSearch for the parts of the given solver
+  FrontierSearch(Solver solver) {
+    this.solver = solver;
+    this.cells = new IntStack(16);
+    this.numbers = new IntStack(16);
+    this.pending = new IntStack(16);
+    this.numberStart = new int[17];
+    this.numberList = new int[64];
+    this.cellStart = new int[17];
+    this.cellList = new int[64];
+    this.needed = new int[16];
+    this.value = new int[16];
+    this.tried = new int[17];
+    this.given = new int[16];
+    this.open = new int[16];
+    this.mineIn = new long[16];
+  }
+
+
+  //EFFECT: collect the part of the frontier that the number at start
+  //belongs to, marking it seen in the solver, and get ready to search it
+  void load(int start) {
+    Solver solver = this.solver;
+    Board board = solver.board;
+    int stamp = solver.stamp;
+    this.cells.clear();
+    this.numbers.clear();
+    this.pending.clear();
+    this.pending.push(start);
+    solver.seen[start] = stamp;
+    int links = 0;
+    while (!this.pending.isEmpty()) {
+      int c = this.pending.pop();
+      this.numbers.push(c);
+      int u = solver.unknowns(c, solver.aroundX);
+      links += u;
+      for (int k = 0; k < u; k += 1) {
+        int cell = solver.aroundX[k];
+        if (solver.seen[cell] != stamp) {
+          solver.seen[cell] = stamp;
+          solver.slot[cell] = this.cells.size;
+          this.cells.push(cell);
+          int n = board.neighbours(cell, solver.aroundB);
+          for (int j = 0; j < n; j += 1) {
+            int b = solver.aroundB[j];
+            if (solver.seen[b] != stamp && solver.isNumber(b)) {
+              solver.seen[b] = stamp;
+              this.pending.push(b);
+            }
+          }
+        }
+      }
+    }
+    int vars = this.cells.size;
+    int cons = this.numbers.size;
+    this.fit(vars, cons, links);
+    Arrays.fill(this.cellStart, 0, vars + 1, 0);
+    int at = 0;
+    for (int i = 0; i < cons; i += 1) {
+      int c = this.numbers.items[i];
+      int u = solver.unknowns(c, solver.aroundA);
+      this.numberStart[i] = at;
+      for (int k = 0; k < u; k += 1) {
+        int v = solver.slot[solver.aroundA[k]];
+        this.numberList[at] = v;
+        this.cellStart[v + 1] += 1;
+        at += 1;
+      }
+      this.needed[i] = solver.remaining(c);
+      this.given[i] = 0;
+      this.open[i] = u;
+    }
+    this.numberStart[cons] = at;
+    for (int v = 0; v < vars; v += 1) {
+      this.cellStart[v + 1] += this.cellStart[v];
+    }
+    //tried is free until the search, so it holds where each cell's
+    //next number goes
+    System.arraycopy(this.cellStart, 0, this.tried, 0, vars);
+    for (int i = 0; i < cons; i += 1) {
+      for (int k = this.numberStart[i]; k < this.numberStart[i + 1]; k += 1) {
+        int v = this.numberList[k];
+        this.cellList[this.tried[v]] = i;
+        this.tried[v] += 1;
+      }
+    }
+    Arrays.fill(this.value, 0, vars, -1);
+    Arrays.fill(this.mineIn, 0, vars, 0);
+    this.solutions = 0;
+    this.nodes = 0;
+  }
+
+
+  //EFFECT: grow the arrays to hold a part of the given numbers of cells,
+  //numbers and links between them, keeping those already big enough
+  void fit(int vars, int cons, int links) {
+    if (this.value.length < vars) {
+      int size = Math.max(vars, this.value.length * 2);
+      this.value = new int[size];
+      this.tried = new int[size + 1];
+      this.cellStart = new int[size + 1];
+      this.mineIn = new long[size];
+    }
+    if (this.needed.length < cons) {
+      int size = Math.max(cons, this.needed.length * 2);
+      this.needed = new int[size];
+      this.given = new int[size];
+      this.open = new int[size];
+      this.numberStart = new int[size + 1];
+    }
+    if (this.numberList.length < links) {
+      int size = Math.max(links, this.numberList.length * 2);
+      this.numberList = new int[size];
+      this.cellList = new int[size];
+    }
+  }
+
+
+  //check if every number of the part loaded last is settled, that is the
+  //part was searched before without result and has not changed since
+  boolean settled() {
+    for (int i = 0; i < this.numbers.size; i += 1) {
+      if (!this.solver.settled[this.numbers.items[i]]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  //EFFECT: mark every number of the part loaded last as settled
+  void settle() {
+    for (int i = 0; i < this.numbers.size; i += 1) {
+      this.solver.settled[this.numbers.items[i]] = true;
+    }
+  }
+
+
+  //EFFECT: search the part loaded last, record the cells it decides in the
+  //solver, and return whether it decided any (a part that takes more than
+  //the solver's maxNodes assignments, or has more cells than that, is
+  //given up)
+  boolean run() {
+    boolean finished = this.cells.size <= this.solver.maxNodes && this.assign();
+    this.solver.lastNodes += this.nodes;
+    if (!finished || this.solutions == 0) {
+      return false;
+    }
+    boolean decided = false;
+    for (int v = 0; v < this.cells.size; v += 1) {
+      int cell = this.cells.items[v];
+      if (this.mineIn[v] == 0) {
+        this.solver.markSafe(cell);
+        decided = true;
+      }
+      else if (this.mineIn[v] == this.solutions) {
+        this.solver.markMine(cell);
+        decided = true;
+      }
+    }
+    return decided;
+  }
+
+
+  //EFFECT: try both values for every cell in turn, counting the
+  //assignments that fit every number; return false if the budget ran out
+  //(an assignment found costs as many steps as it has cells, and the cells
+  //are walked with tried as an explicit stack, so a part of any size is
+  //searched without recursion)
+  boolean assign() {
+    int vars = this.cells.size;
+    int[] tried = this.tried;
+    tried[0] = 0;
+    int v = 0;
+    while (v >= 0) {
+      if (v == vars) {
+        this.solutions += 1;
+        for (int k = 0; k < vars; k += 1) {
+          this.mineIn[k] += this.value[k];
+        }
+        this.nodes += vars;
+        if (this.nodes > this.solver.maxNodes) {
+          return false;
+        }
+        v -= 1;
+        if (v >= 0) {
+          this.set(v, tried[v] - 1, -1);
+        }
+      }
+      else if (tried[v] == 2) {
+        v -= 1;
+        if (v >= 0) {
+          this.set(v, tried[v] - 1, -1);
+        }
+      }
+      else {
+        int val = tried[v];
+        tried[v] += 1;
+        this.nodes += 1;
+        if (this.nodes > this.solver.maxNodes) {
+          return false;
+        }
+        if (this.fits(v, val)) {
+          this.set(v, val, 1);
+          v += 1;
+          tried[v] = 0;
+        }
+      }
+    }
+    return true;
+  }
+
+
+  //check if giving cell v the value val keeps every number it
+  //touches satisfiable
+  boolean fits(int v, int val) {
+    for (int k = this.cellStart[v]; k < this.cellStart[v + 1]; k += 1) {
+      int i = this.cellList[k];
+      int mines = this.given[i] + val;
+      if (mines > this.needed[i] || mines + this.open[i] - 1 < this.needed[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  //EFFECT: give (dir 1) or take back (dir -1) the value val of cell v
+  void set(int v, int val, int dir) {
+    this.value[v] = dir > 0 ? val : -1;
+    for (int k = this.cellStart[v]; k < this.cellStart[v + 1]; k += 1) {
+      int i = this.cellList[k];
+      this.given[i] += dir * val;
+      this.open[i] -= dir;
+    }
+  }
+}
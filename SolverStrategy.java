@@ -0,0 +1,50 @@
+import java.util.SplittableRandom;
+
+//plays like a careful player: reveals a cell the Solver knows is safe
+//when there is one, and otherwise the cell MineProbability finds least
+//likely to be a mine; the solver and the probabilities are kept from
+//game to game while the engine stays the same, but the samples of each
+//game are drawn from that game's seed, so a game plays the same on
+//whichever worker plays it
+class SolverStrategy extends AStrategy {
+
+  Solver solver;
+  MineProbability chances;
+  //the moves of the current game that were guesses
+  int guesses;
+
+
+  //EFFECT: follow the given engine, starting afresh on its board
+  public void start(MineSweeperEngine engine, int game, long seed) {
+    if (this.solver == null || this.solver.engine != engine) {
+      if (this.solver != null) {
+        this.solver.detach();
+      }
+      this.solver = new Solver(engine);
+      this.chances = new MineProbability(engine, seed);
+    }
+    else {
+      this.solver.attach();
+      this.chances.rand = new SplittableRandom(seed);
+      //parts counted from samples of another game's seed are not kept
+      this.chances.counts.clear();
+    }
+    this.guesses = 0;
+  }
+
+
+  //EFFECT: reveal a safe cell, or the safest guess when none is known
+  public int step(MineSweeperEngine engine) {
+    int[] safe = this.solver.nextSafeMoves();
+    if (safe.length > 0) {
+      return engine.play(safe[0], MineSweeperEngine.REVEAL);
+    }
+    this.chances.compute();
+    int guess = this.chances.safest();
+    if (guess < 0) {
+      return -1;
+    }
+    this.guesses += 1;
+    return engine.play(guess, MineSweeperEngine.REVEAL);
+  }
+}
@@ -0,0 +1,49 @@
+//represents a rectangular grid whose edges wrap around, so the
+//first and last columns (and rows) touch each other
+class TorusTopology extends ATopology {
+
+  //constructor of TorusTopology
+  TorusTopology(int rows, int cols) {
+    super(rows, cols);
+  }
+
+
+  //a cell of the torus has at most 8 neighbours
+  public int maxDegree() {
+    return 8;
+  }
+
+
+  //EFFECT: write the neighbours of the given cell into out,
+  //on grids narrower than 3 cells the wrapped cells repeat,
+  //so each neighbour is only written once and never the cell itself
+  public int neighbours(int idx, int[] out) {
+    int col = idx / this.rows;
+    int row = idx % this.rows;
+    boolean small = this.rows < 3 || this.cols < 3;
+    int count = 0;
+    for (int dx = -1; dx <= 1; dx += 1) {
+      int x = (col + dx + this.cols) % this.cols;
+      for (int dy = -1; dy <= 1; dy += 1) {
+        int y = (row + dy + this.rows) % this.rows;
+        int next = x * this.rows + y;
+        if (next != idx && (!small || !this.contains(out, count, next))) {
+          out[count] = next;
+          count += 1;
+        }
+      }
+    }
+    return count;
+  }
+
+
+  //check if value is among the first count entries of out
+  boolean contains(int[] out, int count, int value) {
+    for (int k = 0; k < count; k += 1) {
+      if (out[k] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,187 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+//keeps the moves made on a board so they can be undone and redone; a move
+//is kept as what it changed, not as a copy of the board: the cells it
+//revealed, sorted and stored as runs of consecutive indices (a flood fill
+//reveals long runs down each column), and the cells whose flag it toggled,
+//all as varints in one byte array; undoing or redoing a move costs as much
+//as the move changed, and when the kept moves take more than maxBytes the
+//oldest ones are dropped
+//
+//a move: varint runs, then per run the varint gap from the end of the
+//previous run and the varint run length; varint flags, then per flag the
+//varint gap from the previous flagged index
+class UndoJournal {
+
+  Board board;
+  int maxBytes;
+  ArrayDeque<byte[]> undos;
+  ArrayDeque<byte[]> redos;
+  //the bytes taken by every move kept
+  long bytes;
+  //the cells changed by the move being recorded, and the journal the
+  //board had before (a solver's), which is given the changes as well
+  IntStack recording;
+  IntStack outer;
+  int[] cursor;
+
+
+  //constructor of UndoJournal keeping at most maxBytes of moves of the given board
+  UndoJournal(Board board, int maxBytes) {
+    this.board = board;
+    this.maxBytes = maxBytes;
+    this.undos = new ArrayDeque<byte[]>();
+    this.redos = new ArrayDeque<byte[]>();
+    this.recording = new IntStack(64);
+    this.cursor = new int[1];
+  }
+
+
+  //a journal holding the same moves as this one, for the given board
+  //(moves are never changed once kept, so they are shared)
+  UndoJournal copy(Board on) {
+    UndoJournal other = new UndoJournal(on, this.maxBytes);
+    other.undos.addAll(this.undos);
+    other.redos.addAll(this.redos);
+    other.bytes = this.bytes;
+    return other;
+  }
+
+
+  //EFFECT: start recording the changes of a move
+  public void begin() {
+    this.recording.clear();
+    this.outer = this.board.journal;
+    this.board.journal = this.recording;
+  }
+
+
+  //EFFECT: stop recording and keep the move if it changed anything;
+  //a new move can no longer be redone past
+  public void end() {
+    this.board.journal = this.outer;
+    if (this.outer != null) {
+      this.outer.addAll(this.recording);
+    }
+    if (this.recording.isEmpty()) {
+      return;
+    }
+    byte[] move = this.encode(this.recording);
+    this.undos.addLast(move);
+    this.bytes += move.length;
+    while (!this.redos.isEmpty()) {
+      this.bytes -= this.redos.pop().length;
+    }
+    while (this.bytes > this.maxBytes && !this.undos.isEmpty()) {
+      this.bytes -= this.undos.pollFirst().length;
+    }
+  }
+
+
+  //check if there is a move to undo
+  public boolean canUndo() {
+    return !this.undos.isEmpty();
+  }
+
+
+  //check if there is an undone move to redo
+  public boolean canRedo() {
+    return !this.redos.isEmpty();
+  }
+
+
+  //EFFECT: take back the last move, return false if there was none
+  public boolean undo() {
+    if (this.undos.isEmpty()) {
+      return false;
+    }
+    byte[] move = this.undos.pollLast();
+    this.apply(move, false);
+    this.redos.push(move);
+    return true;
+  }
+
+
+  //EFFECT: make the last undone move again, return false if there was none
+  public boolean redo() {
+    if (this.redos.isEmpty()) {
+      return false;
+    }
+    byte[] move = this.redos.pop();
+    this.apply(move, true);
+    this.undos.addLast(move);
+    return true;
+  }
+
+
+  //EFFECT: reveal (forward) or hide again (backward) the cells of the
+  //given move and toggle its flags
+  void apply(byte[] move, boolean forward) {
+    this.cursor[0] = 0;
+    int runs = MoveLog.getVarint(move, this.cursor);
+    int idx = 0;
+    for (int r = 0; r < runs; r += 1) {
+      idx += MoveLog.getVarint(move, this.cursor);
+      int end = idx + MoveLog.getVarint(move, this.cursor);
+      for (; idx < end; idx += 1) {
+        if (forward) {
+          this.board.reveal(idx);
+        }
+        else {
+          this.board.hide(idx);
+        }
+      }
+    }
+    int flags = MoveLog.getVarint(move, this.cursor);
+    idx = 0;
+    for (int f = 0; f < flags; f += 1) {
+      idx += MoveLog.getVarint(move, this.cursor);
+      this.board.setFlagged(idx, !this.board.isFlagged(idx));
+    }
+  }
+
+
+  //the bytes of a move that changed the given cells
+  //(indices of revealed cells, -(idx + 1) for toggled flags)
+  byte[] encode(IntStack changed) {
+    int[] cells = changed.items;
+    int n = changed.size;
+    //flag toggles are negative, so they sort first, in reverse index order
+    Arrays.sort(cells, 0, n);
+    int flags = 0;
+    while (flags < n && cells[flags] < 0) {
+      flags += 1;
+    }
+    byte[] out = new byte[10 * (n + 1)];
+    int at = 0;
+    int runs = 0;
+    for (int i = flags; i < n; i += 1) {
+      if (i == flags || cells[i] != cells[i - 1] + 1) {
+        runs += 1;
+      }
+    }
+    at = MoveLog.putVarint(out, at, runs);
+    int last = 0;
+    int i = flags;
+    while (i < n) {
+      int start = cells[i];
+      int j = i + 1;
+      while (j < n && cells[j] == cells[j - 1] + 1) {
+        j += 1;
+      }
+      at = MoveLog.putVarint(out, at, start - last);
+      at = MoveLog.putVarint(out, at, j - i);
+      last = start + (j - i);
+      i = j;
+    }
+    at = MoveLog.putVarint(out, at, flags);
+    last = 0;
+    for (int f = flags - 1; f >= 0; f -= 1) {
+      int idx = -cells[f] - 1;
+      at = MoveLog.putVarint(out, at, idx - last);
+      last = idx;
+    }
+    return Arrays.copyOf(out, at);
+  }
+}
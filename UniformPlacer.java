@@ -0,0 +1,33 @@
+import java.util.Random;
+
+//places mines uniformly at random with exactly one draw per mine
+//(Floyd's sampling over cell indices, using the board as the bitset);
+//when more than half of the board is mined, the safe cells are sampled
+//instead and the result is inverted, so placement stays linear at any density;
+//the board must be empty, as mines already on it are taken for picks
+class UniformPlacer implements IMinePlacer {
+
+  //EFFECT: place mines by sampling distinct cell indices
+  public void place(Board board, int mines, Random rand) {
+    int n = board.size();
+    if (mines < 0 || mines > n) {
+      throw new IllegalArgumentException("Cannot place " + mines + " mines on "
+          + n + " cells");
+    }
+    boolean dense = mines > n / 2;
+    int picks = dense ? n - mines : mines;
+    for (int j = n - picks; j < n; j += 1) {
+      int idx = rand.nextInt(j + 1);
+      if (board.isMine(idx)) {
+        idx = j;
+      }
+      board.setMine(idx);
+    }
+    if (dense) {
+      byte[] state = board.state;
+      for (int i = 0; i < n; i += 1) {
+        state[i] ^= Board.MINE;
+      }
+    }
+  }
+}